@@ -0,0 +1,106 @@
+package org.complykit.licensecheck.mojo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.complykit.licensecheck.exclude.ExclusionMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Testing coordinates against the excludes: a mix of exact coordinates, globs and regexes, most coordinates don't
+ * match. patternLoop is the plain pass over every exclude the compiled {@link ExclusionMatcher} replaces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExclusionBenchmark
+{
+  @Param({ "10", "200" })
+  public int patterns;
+
+  private Set<String> excludeSet;
+  private List<Pattern> patternList;
+  private ExclusionMatcher matcher;
+  private String[] coordinates;
+
+  @Setup
+  public void setUp()
+  {
+    final OpenSourceLicenseCheckMojo mojo = new OpenSourceLicenseCheckMojo();
+    mojo.setLog(SyntheticRepository.newSilentLog());
+    final String[] excludes = new String[patterns];
+    final String[] regexes = new String[patterns];
+    final List<String> globs = new ArrayList<String>();
+    for (int i = 0; i < patterns; i++) {
+      excludes[i] = "com.bigco.team" + i + ":internal-lib:1." + i;
+      regexes[i] = "com\\.bigco\\.team" + i + "\\..*:.*:.*";
+      globs.add("com.bigco.group" + i + ".*:*:*");
+    }
+    excludeSet = mojo.getAsLowerCaseSet(excludes);
+    patternList = mojo.getAsPatternList(regexes);
+    for (final String glob : globs) {
+      patternList.add(Pattern.compile(glob.replace(".", "\\.").replace("*", ".*")));
+    }
+    matcher = new ExclusionMatcher(excludeSet, globs, mojo.getAsPatternList(regexes));
+
+    coordinates = new String[100];
+    for (int i = 0; i < coordinates.length; i++) {
+      final String groupId;
+      if (i % 10 == 0) {
+        groupId = "com.bigco.team" + i + ".sub";
+      } else if (i % 10 == 5) {
+        groupId = "com.bigco.group" + i + ".sub";
+      } else {
+        groupId = "org.example.group" + i;
+      }
+      coordinates[i] = groupId + ":lib-" + i + ":1.0";
+    }
+  }
+
+  @Benchmark
+  public void patternLoop(final Blackhole blackhole)
+  {
+    for (final String template : coordinates) {
+      blackhole.consume(loop(template));
+    }
+  }
+
+  @Benchmark
+  public void compiledMatcher(final Blackhole blackhole)
+  {
+    for (final String template : coordinates) {
+      blackhole.consume(matcher.matches(template));
+    }
+  }
+
+  private boolean loop(final String template)
+  {
+    if (excludeSet.contains(template.toLowerCase(Locale.ENGLISH))) {
+      return true;
+    }
+    for (final Pattern pattern : patternList) {
+      if (pattern.matcher(template).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
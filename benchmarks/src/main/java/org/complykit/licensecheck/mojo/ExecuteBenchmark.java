@@ -0,0 +1,73 @@
+package org.complykit.licensecheck.mojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A complete run of the mojo against a synthetic local repository on disk, to see how throughput holds up as the
+ * graph grows. Every invocation uses a fresh mojo, so the per-run caches start out empty; the JVM wide license matcher
+ * and memo stay warm, as they would in a reactor build.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecuteBenchmark
+{
+  @Param({ "1000", "10000", "100000" })
+  public int artifacts;
+
+  @Param({ "1", "6" })
+  public int maxParentDepth;
+
+  @Param({ "1", "4" })
+  public int threads;
+
+  private SyntheticRepository repository;
+  private Set<Artifact> dependencies;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException
+  {
+    final File basedir = File.createTempFile("license-check-repo", "");
+    basedir.delete();
+    repository = new SyntheticRepository(basedir).artifacts(artifacts).maxParentDepth(maxParentDepth)
+        .parentChains(Math.max(1, artifacts / 20)).licenseVariety(20);
+    dependencies = repository.generate();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+  {
+    SyntheticRepository.delete(repository.getBasedir());
+  }
+
+  @Benchmark
+  public OpenSourceLicenseCheckMojo execute() throws MojoExecutionException, MojoFailureException
+  {
+    final OpenSourceLicenseCheckMojo mojo = repository.newMojo(dependencies, threads, SyntheticRepository.newSilentLog());
+    mojo.execute();
+    return mojo;
+  }
+}
@@ -0,0 +1,68 @@
+package org.complykit.licensecheck.mojo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.complykit.licensecheck.license.LicenseMatcher;
+import org.complykit.licensecheck.model.LicenseDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * License name to code conversion: through the mojo (memoized), straight through the compiled matcher, and the way it
+ * used to be done (compiling every regex on every call) as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LicenseNameBenchmark
+{
+  @Param({ "The Apache Software License, Version 2.0", "MIT License", "Eclipse Public License - v 1.0",
+      "GNU Lesser General Public License, version 2.1", "Public Domain" })
+  public String licenseName;
+
+  private OpenSourceLicenseCheckMojo mojo;
+  private LicenseMatcher matcher;
+
+  @Setup
+  public void setUp()
+  {
+    mojo = new OpenSourceLicenseCheckMojo();
+    matcher = LicenseMatcher.getDefault();
+  }
+
+  @Benchmark
+  public String convertLicenseNameToCode()
+  {
+    return mojo.convertLicenseNameToCode(licenseName);
+  }
+
+  @Benchmark
+  public String matcher()
+  {
+    return matcher.findCode(licenseName);
+  }
+
+  @Benchmark
+  public String regexPerCall()
+  {
+    for (final LicenseDescriptor descriptor : matcher.getDescriptors()) {
+      if (Pattern.compile(descriptor.getRegex(), Pattern.CASE_INSENSITIVE).matcher(licenseName).find()) {
+        return descriptor.getCode();
+      }
+    }
+    return null;
+  }
+}
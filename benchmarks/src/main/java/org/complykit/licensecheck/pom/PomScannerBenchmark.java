@@ -0,0 +1,131 @@
+package org.complykit.licensecheck.pom;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.complykit.licensecheck.model.PomInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading the license name and parent coordinates from a pom. "small" is a typical library pom, "large" has a big
+ * dependency management section in front of the licenses, like the BOM style parents do.
+ *
+ * readLinesAndIndexOf is the way it used to be done (FileReader, readLine, indexOf and substring) as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PomScannerBenchmark
+{
+  @Param({ "small", "large" })
+  public String pom;
+
+  private File file;
+  private byte[] bytes;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException
+  {
+    bytes = createPom("large".equals(pom) ? 2000 : 10).getBytes("UTF-8");
+    file = File.createTempFile("benchmark", ".pom");
+    final OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(bytes);
+    } finally {
+      out.close();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+  {
+    file.delete();
+  }
+
+  @Benchmark
+  public PomInfo scanFile() throws IOException
+  {
+    return PomScanner.scan(file);
+  }
+
+  @Benchmark
+  public PomInfo scanBuffer() throws IOException
+  {
+    return PomScanner.scan(ByteBuffer.wrap(bytes));
+  }
+
+  @Benchmark
+  public PomInfo scanStax() throws IOException
+  {
+    return PomScanner.scan(new ByteArrayInputStream(bytes));
+  }
+
+  @Benchmark
+  public String readLinesAndIndexOf() throws IOException
+  {
+    final StringBuffer buffer = new StringBuffer();
+    final BufferedReader reader = new BufferedReader(new FileReader(file));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        buffer.append(line);
+      }
+    } finally {
+      reader.close();
+    }
+    final String raw = buffer.toString();
+    final int license = raw.indexOf("<license>");
+    final String licenseContents = raw.substring(license + "<license>".length(), raw.indexOf("</license>"));
+    final String name = licenseContents.substring(licenseContents.indexOf("<name>") + "<name>".length(),
+        licenseContents.indexOf("</name>"));
+    final String contents = raw.substring(raw.indexOf("<parent>") + "<parent>".length(), raw.indexOf("</parent>"));
+    return name + contents.substring(contents.indexOf("<groupId>") + "<groupId>".length(),
+        contents.indexOf("</groupId>"));
+  }
+
+  static String createPom(final int managedDependencies)
+  {
+    final StringBuilder pom = new StringBuilder();
+    pom.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    pom.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+    pom.append("  <modelVersion>4.0.0</modelVersion>\n");
+    pom.append("  <parent>\n    <groupId>org.example</groupId>\n    <artifactId>example-parent</artifactId>\n");
+    pom.append("    <version>42</version>\n  </parent>\n");
+    pom.append("  <artifactId>example</artifactId>\n  <name>Example</name>\n");
+    pom.append("  <description>An example library with a few dependencies.</description>\n");
+    pom.append("  <dependencyManagement>\n    <dependencies>\n");
+    for (int i = 0; i < managedDependencies; i++) {
+      pom.append("      <dependency>\n        <groupId>org.example.group").append(i).append("</groupId>\n");
+      pom.append("        <artifactId>library-").append(i).append("</artifactId>\n");
+      pom.append("        <version>1.").append(i).append(".0</version>\n      </dependency>\n");
+    }
+    pom.append("    </dependencies>\n  </dependencyManagement>\n");
+    pom.append("  <licenses>\n    <license>\n      <name>The Apache Software License, Version 2.0</name>\n");
+    pom.append("      <url>http://www.apache.org/licenses/LICENSE-2.0.txt</url>\n");
+    pom.append("      <distribution>repo</distribution>\n    </license>\n  </licenses>\n");
+    pom.append("</project>\n");
+    return pom.toString();
+  }
+}
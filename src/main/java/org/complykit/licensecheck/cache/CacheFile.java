@@ -0,0 +1,156 @@
+package org.complykit.licensecheck.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+/**
+ * The JSON file behind a cross-build cache: a format version, optionally the fingerprint of the license table the
+ * entries were derived with, and the entries by coordinates. Files of another version or table are treated as empty.
+ *
+ * Saving merges the entries that other builds wrote to the file in the meantime, and replaces the file with a
+ * temporary one, so readers never see half a file.
+ *
+ * @param <E> the entries
+ */
+abstract class CacheFile<E>
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * The on-disk layout.
+   */
+  static final class Contents<E>
+  {
+    int version;
+    String descriptors;
+    Map<String, E> entries;
+  }
+
+  private final File file;
+  private final int version;
+  private final String descriptors;
+  private final Type contentsType;
+
+  /**
+   * @param file
+   * @param version the format version
+   * @param descriptors identifies the license table, null if the entries don't depend on it
+   * @param contentsType the type of {@link Contents} with the entry type, from a TypeToken
+   */
+  CacheFile(final File file, final int version, final String descriptors, final Type contentsType)
+  {
+    this.file = file;
+    this.version = version;
+    this.descriptors = descriptors;
+    this.contentsType = contentsType;
+  }
+
+  File getFile()
+  {
+    return file;
+  }
+
+  /**
+   * @param key
+   * @param entry read from the file or about to be written, may be null
+   * @return whether the entry is (still) worth keeping
+   */
+  abstract boolean keep(String key, E entry);
+
+  /**
+   * @return the entries of the file worth {@link #keep(String, Object) keeping}, empty if there is no file or it has
+   *         another version or table
+   * @throws IOException if the file exists but cannot be read or parsed
+   */
+  Map<String, E> read() throws IOException
+  {
+    final Map<String, E> entries = new TreeMap<String, E>();
+    if (!file.isFile()) {
+      return entries;
+    }
+    final Contents<E> contents;
+    final Reader reader = new InputStreamReader(new FileInputStream(file), UTF8);
+    try {
+      contents = new Gson().fromJson(reader, contentsType);
+    } catch (final JsonParseException e) {
+      throw new IOException("Cannot parse " + file + ": " + e.getMessage(), e);
+    } finally {
+      reader.close();
+    }
+    if (contents == null || contents.entries == null || contents.version != version
+        || (descriptors != null && !descriptors.equals(contents.descriptors))) {
+      return entries;
+    }
+    for (final Map.Entry<String, E> entry : contents.entries.entrySet()) {
+      if (keep(entry.getKey(), entry.getValue())) {
+        entries.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Writes the entries of the file, without the removed ones, and the given entries worth keeping.
+   *
+   * @param entries
+   * @param removed keys to drop from the file, unless they are in entries
+   * @throws IOException
+   */
+  void save(final Map<String, E> entries, final Collection<String> removed) throws IOException
+  {
+    Map<String, E> merged;
+    try {
+      merged = read();
+    } catch (final IOException e) {
+      // a broken file gets replaced
+      merged = new TreeMap<String, E>();
+    }
+    merged.keySet().removeAll(removed);
+    for (final Map.Entry<String, E> entry : entries.entrySet()) {
+      if (keep(entry.getKey(), entry.getValue())) {
+        merged.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    final Contents<E> contents = new Contents<E>();
+    contents.version = version;
+    contents.descriptors = descriptors;
+    contents.entries = merged;
+
+    final File directory = file.getAbsoluteFile().getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create directory " + directory);
+    }
+    final File temp = File.createTempFile(file.getName(), ".tmp", directory);
+    try {
+      final Writer writer = new OutputStreamWriter(new FileOutputStream(temp), UTF8);
+      try {
+        new GsonBuilder().setPrettyPrinting().create().toJson(contents, contentsType, writer);
+      } finally {
+        writer.close();
+      }
+      if (!temp.renameTo(file)) {
+        if (!file.delete() || !temp.renameTo(file)) {
+          throw new IOException("Cannot replace " + file);
+        }
+      }
+    } finally {
+      temp.delete();
+    }
+  }
+}
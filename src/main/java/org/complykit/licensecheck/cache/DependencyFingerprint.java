@@ -0,0 +1,129 @@
+package org.complykit.licensecheck.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Identifies the input of a license check: the resolved artifacts and every setting that influences the outcome.
+ * Artifacts and settings may be added in any order. If the fingerprint of a run matches the one stored by the last
+ * successful run, the outcome can't be any different and the check can be skipped.
+ */
+public class DependencyFingerprint
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final List<String> artifacts = new ArrayList<String>();
+  private final Map<String, String> settings = new TreeMap<String, String>();
+  private boolean snapshots;
+
+  /**
+   * @param coordinates groupId:artifactId:version
+   * @param scope may be null
+   */
+  public void addArtifact(final String coordinates, final String scope)
+  {
+    if (coordinates.endsWith("-SNAPSHOT")) {
+      snapshots = true;
+    }
+    artifacts.add(coordinates + " " + scope);
+  }
+
+  public void addSetting(final String name, final Object value)
+  {
+    settings.put(name, String.valueOf(value));
+  }
+
+  /**
+   * @param values the order doesn't matter
+   */
+  public void addSetting(final String name, final Collection<String> values)
+  {
+    final List<String> sorted = new ArrayList<String>(values);
+    Collections.sort(sorted);
+    settings.put(name, sorted.toString());
+  }
+
+  /**
+   * @return whether a snapshot was added; their poms change without a version bump, so these checks shouldn't be
+   *         skipped
+   */
+  public boolean hasSnapshots()
+  {
+    return snapshots;
+  }
+
+  /**
+   * @return the SHA-1 of the artifacts (sorted) and the settings, in hex
+   */
+  public String toHex()
+  {
+    final List<String> sorted = new ArrayList<String>(artifacts);
+    Collections.sort(sorted);
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    for (final String artifact : sorted) {
+      digest.update((artifact + "\n").getBytes(UTF8));
+    }
+    for (final Map.Entry<String, String> setting : settings.entrySet()) {
+      digest.update((setting.getKey() + "=" + setting.getValue() + "\n").getBytes(UTF8));
+    }
+    return LicenseCache.toHex(digest.digest());
+  }
+
+  /**
+   * @return the fingerprint stored in the file, or null if there is none
+   */
+  public static String read(final File file)
+  {
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      final InputStream in = new FileInputStream(file);
+      try {
+        final byte[] buffer = new byte[128];
+        int length = 0;
+        int read;
+        while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+          length += read;
+        }
+        return new String(buffer, 0, length, UTF8).trim();
+      } finally {
+        in.close();
+      }
+    } catch (final IOException e) {
+      return null;
+    }
+  }
+
+  public static void write(final File file, final String fingerprint) throws IOException
+  {
+    final File directory = file.getAbsoluteFile().getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create directory " + directory);
+    }
+    final OutputStream out = new FileOutputStream(file);
+    try {
+      out.write((fingerprint + "\n").getBytes(UTF8));
+    } finally {
+      out.close();
+    }
+  }
+}
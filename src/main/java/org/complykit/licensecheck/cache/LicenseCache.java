@@ -0,0 +1,256 @@
+package org.complykit.licensecheck.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Remembers the license name and code of released artifacts between builds. The cache lives in a JSON file (usually
+ * in the local repository) and is keyed by groupId:artifactId:version. Each entry also carries the SHA-1, size and
+ * modification time of the pom it was derived from; if Maven's checksum file next to the pom disagrees, or without
+ * one the pom has changed, the entry is dropped. Without a checksum file the pom is only hashed if its size or
+ * modification time differ, and every entry is checked at most once per cache instance.
+ *
+ * Snapshots are never cached, their poms (and parents) may change without a version bump.
+ */
+public class LicenseCache
+{
+  static final int FORMAT_VERSION = 2;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  public static final class Entry
+  {
+    public final String licenseName;
+    public final String licenseCode;
+    public final String pomSha1;
+    /*
+     * 0 if unknown
+     */
+    public final long pomSize;
+    public final long pomLastModified;
+
+    public Entry(String licenseName, String licenseCode, String pomSha1, long pomSize, long pomLastModified)
+    {
+      this.licenseName = licenseName;
+      this.licenseCode = licenseCode;
+      this.pomSha1 = pomSha1;
+      this.pomSize = pomSize;
+      this.pomLastModified = pomLastModified;
+    }
+  }
+
+  private static final Type CONTENTS = new TypeToken<CacheFile.Contents<Entry>>()
+  {
+  }.getType();
+
+  private final CacheFile<Entry> file;
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+  private final Set<String> validated = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final Set<String> invalidated = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final AtomicBoolean dirty = new AtomicBoolean();
+
+  /**
+   * @param file the cache file
+   * @param descriptorsFingerprint identifies the license table the codes were derived with; entries written with a
+   *          different table are discarded
+   */
+  public LicenseCache(File file, String descriptorsFingerprint)
+  {
+    this.file = new CacheFile<Entry>(file, FORMAT_VERSION, descriptorsFingerprint, CONTENTS)
+    {
+      @Override
+      boolean keep(final String key, final Entry entry)
+      {
+        return entry != null;
+      }
+    };
+  }
+
+  public File getFile()
+  {
+    return file.getFile();
+  }
+
+  /**
+   * Reads the cache file, if there is one.
+   *
+   * @throws IOException if the file exists but cannot be read or parsed
+   */
+  public void load() throws IOException
+  {
+    entries.putAll(file.read());
+  }
+
+  /**
+   * @param coordinates groupId:artifactId:version
+   * @param pom the expected location of the artifact's pom in the local repository, may be null
+   * @return the cached entry or null
+   */
+  public Entry get(final String coordinates, final File pom)
+  {
+    final Entry entry = entries.get(coordinates);
+    if (entry == null || pom == null || entry.pomSha1 == null || validated.contains(coordinates)) {
+      return entry;
+    }
+    final Entry current = revalidate(entry, pom);
+    if (current == null) {
+      if (entries.remove(coordinates, entry)) {
+        validated.remove(coordinates);
+        invalidated.add(coordinates);
+        dirty.set(true);
+      }
+      return null;
+    }
+    if (current != entry && entries.replace(coordinates, entry, current)) {
+      dirty.set(true);
+    }
+    validated.add(coordinates);
+    return current;
+  }
+
+  /**
+   * Caches the license of a released artifact. Snapshots are silently ignored.
+   *
+   * @param coordinates groupId:artifactId:version
+   * @param pom the pom the license was read from
+   * @param licenseName
+   * @param licenseCode
+   */
+  public void put(final String coordinates, final File pom, final String licenseName, final String licenseCode)
+  {
+    if (coordinates.endsWith("-SNAPSHOT")) {
+      return;
+    }
+    final long size = pom == null ? 0 : pom.length();
+    final long lastModified = pom == null ? 0 : pom.lastModified();
+    entries.put(coordinates, new Entry(licenseName, licenseCode, sha1(pom), size, lastModified));
+    invalidated.remove(coordinates);
+    validated.add(coordinates);
+    dirty.set(true);
+  }
+
+  public int size()
+  {
+    return entries.size();
+  }
+
+  /**
+   * Writes the cache back if anything changed. Entries that other builds added to the file in the meantime are kept,
+   * unless this cache found them to be stale.
+   *
+   * @throws IOException
+   */
+  public synchronized void save() throws IOException
+  {
+    if (!dirty.getAndSet(false)) {
+      return;
+    }
+    file.save(entries, invalidated);
+  }
+
+  /**
+   * @param entry
+   * @param pom
+   * @return the entry, an equivalent one with the current size and modification time of the pom, or null if the pom
+   *         has changed
+   */
+  private static Entry revalidate(final Entry entry, final File pom)
+  {
+    final File checksum = new File(pom.getPath() + ".sha1");
+    if (checksum.isFile()) {
+      final String expected = readChecksum(checksum);
+      return expected == null || expected.equalsIgnoreCase(entry.pomSha1) ? entry : null;
+    }
+    final long size = pom.length();
+    final long lastModified = pom.lastModified();
+    if (size == entry.pomSize && lastModified == entry.pomLastModified) {
+      return entry;
+    }
+    final String actual = sha1(pom);
+    if (actual == null) {
+      // not in the local repository (any more), nothing to compare with
+      return entry;
+    }
+    return actual.equalsIgnoreCase(entry.pomSha1)
+        ? new Entry(entry.licenseName, entry.licenseCode, entry.pomSha1, size, lastModified) : null;
+  }
+
+  private static String readChecksum(final File file)
+  {
+    try {
+      final InputStream in = new FileInputStream(file);
+      try {
+        final byte[] buffer = new byte[40];
+        int read = 0;
+        int count;
+        while (read < buffer.length && (count = in.read(buffer, read, buffer.length - read)) != -1) {
+          read += count;
+        }
+        return read == buffer.length ? new String(buffer, UTF8) : null;
+      } finally {
+        in.close();
+      }
+    } catch (final IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @param file
+   * @return the hex encoded SHA-1 of the file's contents, or null if it cannot be read
+   */
+  static String sha1(final File file)
+  {
+    if (file == null) {
+      return null;
+    }
+    final File checksum = new File(file.getPath() + ".sha1");
+    if (checksum.isFile()) {
+      final String sha1 = readChecksum(checksum);
+      if (sha1 != null) {
+        return sha1.toLowerCase(Locale.ENGLISH);
+      }
+    }
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      final InputStream in = new FileInputStream(file);
+      try {
+        final byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+          digest.update(buffer, 0, count);
+        }
+      } finally {
+        in.close();
+      }
+      return toHex(digest.digest());
+    } catch (final IOException e) {
+      return null;
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static String toHex(final byte[] bytes)
+  {
+    final StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (final byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return builder.toString();
+  }
+}
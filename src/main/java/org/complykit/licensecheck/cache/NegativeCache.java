@@ -0,0 +1,159 @@
+package org.complykit.licensecheck.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Remembers the coordinates that led nowhere: poms that could not be resolved, and poms whose whole parent chain
+ * declares no license. Asking again would only repeat the same (possibly slow, remote) failure.
+ *
+ * Without a file, the entries live as long as the cache. With a file, they are kept between builds for a limited
+ * time, after which the coordinates are tried again; snapshots are only remembered for the current build.
+ */
+public class NegativeCache
+{
+  static final int FORMAT_VERSION = 1;
+
+  public enum Reason
+  {
+    /**
+     * The pom could not be resolved.
+     */
+    UNRESOLVABLE,
+    /**
+     * Neither the pom nor any of its parents declares a license.
+     */
+    NO_LICENSE
+  }
+
+  public static final class Entry
+  {
+    public final Reason reason;
+    /**
+     * When the entry expires, in milliseconds since the epoch.
+     */
+    public final long expires;
+
+    public Entry(Reason reason, long expires)
+    {
+      this.reason = reason;
+      this.expires = expires;
+    }
+  }
+
+  private static final Type CONTENTS = new TypeToken<CacheFile.Contents<Entry>>()
+  {
+  }.getType();
+
+  private final CacheFile<Entry> file;
+  private final long timeToLive;
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+  private final AtomicBoolean dirty = new AtomicBoolean();
+
+  /**
+   * A cache that is never written to disk and whose entries don't expire.
+   */
+  public NegativeCache()
+  {
+    this(null, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param file the cache file, null to keep the entries in memory only
+   * @param timeToLive how long an entry is valid, in milliseconds
+   */
+  public NegativeCache(File file, long timeToLive)
+  {
+    this.file = file == null ? null : new CacheFile<Entry>(file, FORMAT_VERSION, null, CONTENTS)
+    {
+      @Override
+      boolean keep(final String key, final Entry entry)
+      {
+        return entry != null && entry.reason != null && !key.endsWith("-SNAPSHOT")
+            && entry.expires > currentTimeMillis();
+      }
+    };
+    this.timeToLive = timeToLive;
+  }
+
+  public File getFile()
+  {
+    return file == null ? null : file.getFile();
+  }
+
+  /**
+   * Reads the cache file, if there is one. Expired entries are dropped.
+   *
+   * @throws IOException if the file exists but cannot be read or parsed
+   */
+  public void load() throws IOException
+  {
+    if (file != null) {
+      entries.putAll(file.read());
+    }
+  }
+
+  /**
+   * @param coordinates groupId:artifactId:version
+   * @return why the coordinates are known to lead nowhere, null if they aren't (or no longer)
+   */
+  public Reason get(final String coordinates)
+  {
+    final Entry entry = entries.get(coordinates);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expires <= currentTimeMillis()) {
+      entries.remove(coordinates, entry);
+      return null;
+    }
+    return entry.reason;
+  }
+
+  /**
+   * @param coordinates groupId:artifactId:version
+   * @param reason
+   */
+  public void put(final String coordinates, final Reason reason)
+  {
+    final long now = currentTimeMillis();
+    entries.put(coordinates, new Entry(reason, now > Long.MAX_VALUE - timeToLive ? Long.MAX_VALUE : now + timeToLive));
+    if (!coordinates.endsWith("-SNAPSHOT")) {
+      dirty.set(true);
+    }
+  }
+
+  public int size()
+  {
+    return entries.size();
+  }
+
+  /**
+   * Writes the cache back if it has a file and anything changed. Entries that other builds added to the file in the
+   * meantime are kept, expired ones and snapshots are dropped.
+   *
+   * @throws IOException
+   */
+  public synchronized void save() throws IOException
+  {
+    if (file == null || !dirty.getAndSet(false)) {
+      return;
+    }
+    file.save(entries, Collections.<String> emptySet());
+  }
+
+  /**
+   * @return the current time in milliseconds, overridden by the tests
+   */
+  long currentTimeMillis()
+  {
+    return System.currentTimeMillis();
+  }
+}
@@ -0,0 +1,93 @@
+package org.complykit.licensecheck.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent cache that loads every key only once: the first thread to ask for a key runs the loader, threads
+ * asking for the same key in the meantime wait for its result instead of loading it again.
+ *
+ * Values (null included) are kept for the life of the cache. Failed loads are not, the next caller tries again.
+ */
+public class SingleFlightCache<K, V>
+{
+  private final ConcurrentMap<K, FutureTask<V>> values = new ConcurrentHashMap<K, FutureTask<V>>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * @param key
+   * @param loader computes the value if no other thread has (or is about to)
+   * @return the value
+   * @throws ExecutionException if the loader failed, in this thread or the one this thread waited for
+   * @throws InterruptedException if interrupted while waiting for another thread
+   */
+  public V get(final K key, final Callable<V> loader) throws ExecutionException, InterruptedException
+  {
+    FutureTask<V> task = values.get(key);
+    if (task == null) {
+      final FutureTask<V> created = new FutureTask<V>(loader);
+      task = values.putIfAbsent(key, created);
+      if (task == null) {
+        task = created;
+        misses.increment();
+        created.run();
+      } else {
+        hits.increment();
+      }
+    } else {
+      hits.increment();
+    }
+    try {
+      return task.get();
+    } catch (final ExecutionException e) {
+      values.remove(key, task);
+      throw e;
+    }
+  }
+
+  /**
+   * Stores a value that was loaded elsewhere (in a batch, for instance), unless the key is already loaded or being
+   * loaded.
+   */
+  public void putIfAbsent(final K key, final V value)
+  {
+    if (!values.containsKey(key)) {
+      final FutureTask<V> task = new FutureTask<V>(new Callable<V>()
+      {
+        @Override
+        public V call()
+        {
+          return value;
+        }
+      });
+      task.run();
+      values.putIfAbsent(key, task);
+    }
+  }
+
+  public int size()
+  {
+    return values.size();
+  }
+
+  /**
+   * @return how many calls found the value loaded or being loaded
+   */
+  public long getHits()
+  {
+    return hits.sum();
+  }
+
+  /**
+   * @return how many calls ran the loader
+   */
+  public long getMisses()
+  {
+    return misses.sum();
+  }
+}
@@ -0,0 +1,244 @@
+package org.complykit.licensecheck.exclude;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Decides whether groupId:artifactId:version coordinates are excluded from the check. All excludes are compiled once,
+ * so that testing an artifact doesn't cost a pass over every configured exclude:
+ * <ul>
+ * <li>exact coordinates go into a hash set,</li>
+ * <li>globs (com.bigco.*:*:*) go into a trie with one level per coordinate segment; within a segment, globs are
+ * indexed by the literal text before their first wildcard,</li>
+ * <li>regexes are joined into a single alternation, so each artifact takes one pass of the regex engine. Regexes that
+ * cannot be joined safely (back references, named groups, quoting, comments) are matched one by one.</li>
+ * </ul>
+ * Exact coordinates and globs ignore case, regexes are matched as written.
+ */
+public final class ExclusionMatcher
+{
+  private static final Locale LOCALE = Locale.ENGLISH;
+
+  private static final int SEGMENTS = 3;
+
+  /*
+   * constructs that change meaning (or stop compiling) when the regex is embedded in a larger one
+   */
+  private static final Pattern NOT_COMBINABLE =
+      Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]|\\\\Q|\\(\\?[a-zA-Z]*x");
+
+  /**
+   * One level of the glob trie, matching one coordinate segment.
+   */
+  private static final class Node
+  {
+    final Map<String, Node> literals = new HashMap<String, Node>();
+    final Map<String, Node> globs = new HashMap<String, Node>();
+    /*
+     * the globs by the literal text before their first wildcard, and the lengths of those prefixes
+     */
+    final Map<String, List<String>> globsByPrefix = new HashMap<String, List<String>>();
+    int[] prefixLengths = new int[0];
+
+    Node child(final String segment)
+    {
+      final Map<String, Node> children = segment.indexOf('*') < 0 ? literals : globs;
+      Node child = children.get(segment);
+      if (child == null) {
+        child = new Node();
+        children.put(segment, child);
+      }
+      return child;
+    }
+
+    void index()
+    {
+      final Set<Integer> lengths = new TreeSet<Integer>();
+      for (final String glob : globs.keySet()) {
+        final String prefix = glob.substring(0, glob.indexOf('*'));
+        List<String> list = globsByPrefix.get(prefix);
+        if (list == null) {
+          list = new ArrayList<String>();
+          globsByPrefix.put(prefix, list);
+        }
+        list.add(glob);
+        lengths.add(prefix.length());
+      }
+      prefixLengths = new int[lengths.size()];
+      int i = 0;
+      for (final Integer length : lengths) {
+        prefixLengths[i++] = length;
+      }
+      for (final Node child : literals.values()) {
+        child.index();
+      }
+      for (final Node child : globs.values()) {
+        child.index();
+      }
+    }
+
+    boolean matches(final String[] segments, final int level)
+    {
+      if (level == segments.length) {
+        return true;
+      }
+      final String segment = segments[level];
+      final Node literal = literals.get(segment);
+      if (literal != null && literal.matches(segments, level + 1)) {
+        return true;
+      }
+      for (final int length : prefixLengths) {
+        if (length > segment.length()) {
+          break;
+        }
+        final List<String> candidates = globsByPrefix.get(segment.substring(0, length));
+        if (candidates == null) {
+          continue;
+        }
+        for (final String glob : candidates) {
+          if (matchesGlob(glob, length, segment, length) && globs.get(glob).matches(segments, level + 1)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+  }
+
+  private final Set<String> exact;
+  private final Node globs;
+  private final boolean hasGlobs;
+  private final Pattern combined;
+  private final List<Pattern> separate;
+
+  /**
+   * @param excludes exact coordinates
+   * @param globs coordinates whose segments may contain * (any number of characters); missing trailing segments
+   *          match anything
+   * @param regexes matched against the whole coordinates
+   */
+  public ExclusionMatcher(final Collection<String> excludes, final Collection<String> globs,
+      final Collection<Pattern> regexes)
+  {
+    exact = new HashSet<String>();
+    for (final String exclude : excludes) {
+      exact.add(exclude.toLowerCase(LOCALE));
+    }
+
+    this.globs = new Node();
+    for (final String glob : globs) {
+      final String[] segments = glob.toLowerCase(LOCALE).split(":", -1);
+      if (segments.length > SEGMENTS) {
+        throw new IllegalArgumentException("The glob " + glob + " has more than " + SEGMENTS + " segments");
+      }
+      Node node = this.globs;
+      for (int i = 0; i < SEGMENTS; i++) {
+        node = node.child(i < segments.length ? segments[i] : "*");
+      }
+    }
+    this.globs.index();
+    hasGlobs = !globs.isEmpty();
+
+    final StringBuilder alternation = new StringBuilder();
+    final List<Pattern> separate = new ArrayList<Pattern>();
+    for (final Pattern regex : regexes) {
+      // flags passed to compile() would be lost, inline ones (which flags() reports too) stay within the group
+      if (regex.flags() != Pattern.compile(regex.pattern()).flags() || NOT_COMBINABLE.matcher(regex.pattern()).find()) {
+        separate.add(regex);
+      } else {
+        alternation.append(alternation.length() == 0 ? "" : "|").append("(?:").append(regex.pattern()).append(')');
+      }
+    }
+    Pattern combined = null;
+    if (alternation.length() > 0) {
+      try {
+        combined = Pattern.compile(alternation.toString());
+      } catch (final PatternSyntaxException e) {
+        // some construct the check above missed, fall back to matching them one by one
+        for (final Pattern regex : regexes) {
+          if (!separate.contains(regex)) {
+            separate.add(regex);
+          }
+        }
+      }
+    }
+    this.combined = combined;
+    this.separate = separate;
+  }
+
+  /**
+   * @param coordinates groupId:artifactId:version
+   * @return true if the coordinates are excluded
+   */
+  public boolean matches(final String coordinates)
+  {
+    if (coordinates == null) {
+      return false;
+    }
+    if (!exact.isEmpty() || hasGlobs) {
+      final String lowerCase = coordinates.toLowerCase(LOCALE);
+      if (exact.contains(lowerCase)) {
+        return true;
+      }
+      if (hasGlobs) {
+        final String[] segments = lowerCase.split(":", -1);
+        if (segments.length == SEGMENTS && globs.matches(segments, 0)) {
+          return true;
+        }
+      }
+    }
+    if (combined != null && combined.matcher(coordinates).matches()) {
+      return true;
+    }
+    for (final Pattern regex : separate) {
+      if (regex.matcher(coordinates).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the number of regexes that could not be joined into the single alternation
+   */
+  public int getSeparateRegexCount()
+  {
+    return separate.size();
+  }
+
+  /**
+   * Matches text[t..] against glob[g..], where * stands for any number of characters.
+   */
+  static boolean matchesGlob(final String glob, int g, final String text, int t)
+  {
+    int star = -1;
+    int mark = 0;
+    while (t < text.length()) {
+      if (g < glob.length() && glob.charAt(g) == '*') {
+        star = g++;
+        mark = t;
+      } else if (g < glob.length() && glob.charAt(g) == text.charAt(t)) {
+        g++;
+        t++;
+      } else if (star >= 0) {
+        g = star + 1;
+        t = ++mark;
+      } else {
+        return false;
+      }
+    }
+    while (g < glob.length() && glob.charAt(g) == '*') {
+      g++;
+    }
+    return g == glob.length();
+  }
+}
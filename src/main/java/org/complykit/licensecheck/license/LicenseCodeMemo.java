@@ -0,0 +1,161 @@
+package org.complykit.licensecheck.license;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers which code a license name maps to, so the same few dozen names that show up over and over again in a
+ * build skip the {@link LicenseMatcher} entirely.
+ *
+ * Names are normalized first (ASCII lower case, whitespace collapsed); that doesn't change what the matcher finds,
+ * since it ignores ASCII case and none of its keywords contain whitespace. The memo stops growing once it holds
+ * {@link #getMaxSize()} names, which keeps pathological builds from eating the heap.
+ */
+public final class LicenseCodeMemo
+{
+  public static final int DEFAULT_MAX_SIZE = 4096;
+
+  /*
+   * stands in for "no code" since the map cannot hold nulls; descriptor codes are never empty
+   */
+  private static final String NO_CODE = "";
+
+  private static volatile LicenseCodeMemo defaultMemo;
+
+  private final LicenseMatcher matcher;
+  private final int maxSize;
+  private final ConcurrentMap<String, String> codes = new ConcurrentHashMap<String, String>();
+  private final ConcurrentMap<String, String> expressions = new ConcurrentHashMap<String, String>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public LicenseCodeMemo(final LicenseMatcher matcher, final int maxSize)
+  {
+    this.matcher = matcher;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @return the memo in front of {@link LicenseMatcher#getDefault()}, shared by all mojo executions in the JVM
+   */
+  public static LicenseCodeMemo getDefault()
+  {
+    if (defaultMemo == null) {
+      synchronized (LicenseCodeMemo.class) {
+        if (defaultMemo == null) {
+          defaultMemo = new LicenseCodeMemo(LicenseMatcher.getDefault(), DEFAULT_MAX_SIZE);
+        }
+      }
+    }
+    return defaultMemo;
+  }
+
+  /**
+   * @param licenseName
+   * @return the license code or null if the name isn't recognized; for an SPDX style expression (see
+   *         {@link LicenseExpression}) the expression of the codes, or null if none of its licenses is recognized
+   */
+  public String findCode(final String licenseName)
+  {
+    if (licenseName == null) {
+      return null;
+    }
+    if (LicenseExpression.isExpression(licenseName)) {
+      return findExpressionCode(licenseName);
+    }
+    return findNameCode(licenseName);
+  }
+
+  /**
+   * @param licenseName the name of a single license, even if it looks like an expression
+   * @return the license code or null if the name isn't recognized
+   */
+  String findNameCode(final String licenseName)
+  {
+    final String key = normalize(licenseName);
+    String code = codes.get(key);
+    if (code != null) {
+      hits.increment();
+    } else {
+      misses.increment();
+      code = matcher.findCode(key);
+      if (code == null) {
+        code = NO_CODE;
+      }
+      if (codes.size() < maxSize) {
+        codes.putIfAbsent(key, code);
+      }
+    }
+    return code == NO_CODE ? null : code;
+  }
+
+  /**
+   * Expressions are remembered as they are, the operators are case sensitive. Their licenses go through the memo one by
+   * one.
+   */
+  private String findExpressionCode(final String expression)
+  {
+    String code = expressions.get(expression);
+    if (code != null) {
+      hits.increment();
+    } else {
+      misses.increment();
+      code = LicenseExpression.parse(expression).toCode(this);
+      if (code == null) {
+        code = NO_CODE;
+      }
+      if (expressions.size() < maxSize) {
+        expressions.putIfAbsent(expression, code);
+      }
+    }
+    return code == NO_CODE ? null : code;
+  }
+
+  public long getHits()
+  {
+    return hits.sum();
+  }
+
+  public long getMisses()
+  {
+    return misses.sum();
+  }
+
+  public int size()
+  {
+    return codes.size();
+  }
+
+  public int getMaxSize()
+  {
+    return maxSize;
+  }
+
+  /**
+   * @param licenseName
+   * @return the name in lower case (ASCII only) with leading/trailing whitespace removed and all other whitespace
+   *         collapsed into single blanks
+   */
+  public static String normalize(final String licenseName)
+  {
+    final StringBuilder builder = new StringBuilder(licenseName.length());
+    boolean pendingBlank = false;
+    for (int i = 0; i < licenseName.length(); i++) {
+      char c = licenseName.charAt(i);
+      if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+        pendingBlank = builder.length() > 0;
+        continue;
+      }
+      if (pendingBlank) {
+        builder.append(' ');
+        pendingBlank = false;
+      }
+      if (c >= 'A' && c <= 'Z') {
+        c += 'a' - 'A';
+      }
+      builder.append(c);
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,202 @@
+package org.complykit.licensecheck.license;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.complykit.licensecheck.model.LicenseDescriptor;
+
+/**
+ * The binary form of the descriptor table, generated from <code>licenses.txt</code> when the plugin is built (see the
+ * exec-maven-plugin execution in the pom) and bundled as <code>licenses.bin</code>. Reading it is a handful of
+ * length-prefixed strings instead of splitting text, and its regexes are known to compile, because the generator
+ * refuses to write a table with a broken one. It is regenerated on every build and read back to check it against the
+ * text, and LicenseDatabaseTest fails the build if the bundled copy doesn't match <code>licenses.txt</code>, so the
+ * plugin reads it without looking at the text table at all.
+ *
+ * Layout: magic, format version, the distinct strings of the table, then per descriptor the indexes of its code,
+ * alternative code, name and regex in that string table (-1 for null).
+ */
+public final class LicenseDatabase
+{
+  static final int MAGIC = 0x4c494342;
+
+  static final int FORMAT_VERSION = 2;
+
+  private static final int FIELDS = 4;
+
+  private LicenseDatabase()
+  {
+  }
+
+  /**
+   * Generates the binary table.
+   *
+   * @param args the descriptor table (licenses.txt) and the file to write (licenses.bin)
+   * @throws IOException
+   */
+  public static void main(final String[] args) throws IOException
+  {
+    if (args.length != 2) {
+      throw new IllegalArgumentException("Usage: LicenseDatabase <licenses.txt> <licenses.bin>");
+    }
+    final List<LicenseDescriptor> descriptors;
+    final InputStream in = new FileInputStream(args[0]);
+    try {
+      descriptors = LicenseMatcher.loadDescriptors(in);
+    } finally {
+      in.close();
+    }
+    final File file = new File(args[1]);
+    final OutputStream out = new FileOutputStream(file);
+    try {
+      write(descriptors, out);
+    } finally {
+      out.close();
+    }
+    final List<LicenseDescriptor> written;
+    final InputStream check = new FileInputStream(file);
+    try {
+      written = read(check);
+    } finally {
+      check.close();
+    }
+    if (!equal(descriptors, written)) {
+      throw new IllegalStateException(file + " doesn't match " + args[0]);
+    }
+  }
+
+  /**
+   * @param a
+   * @param b
+   * @return whether the two tables have the same descriptors in the same order
+   */
+  static boolean equal(final List<LicenseDescriptor> a, final List<LicenseDescriptor> b)
+  {
+    if (a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); i++) {
+      final LicenseDescriptor x = a.get(i);
+      final LicenseDescriptor y = b.get(i);
+      if (!equal(x.getCode(), y.getCode()) || !equal(x.getAlternativeCode(), y.getAlternativeCode())
+          || !equal(x.getLicenseName(), y.getLicenseName()) || !equal(x.getRegex(), y.getRegex())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean equal(final String a, final String b)
+  {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  /**
+   * @param descriptors
+   * @param out
+   * @throws IOException
+   * @throws IllegalArgumentException if a regex doesn't compile
+   */
+  public static void write(final List<LicenseDescriptor> descriptors, final OutputStream out) throws IOException
+  {
+    final List<String> strings = new ArrayList<String>();
+    final Map<String, Integer> indexes = new HashMap<String, Integer>();
+    final int[] entries = new int[descriptors.size() * FIELDS];
+    for (int i = 0; i < descriptors.size(); i++) {
+      final LicenseDescriptor descriptor = descriptors.get(i);
+      try {
+        Pattern.compile(descriptor.getRegex(), Pattern.CASE_INSENSITIVE);
+      } catch (final PatternSyntaxException e) {
+        throw new IllegalArgumentException("Invalid regex for " + descriptor.getCode() + ": " + e.getMessage(), e);
+      }
+      entries[i * FIELDS] = intern(descriptor.getCode(), strings, indexes);
+      entries[i * FIELDS + 1] = intern(descriptor.getAlternativeCode(), strings, indexes);
+      entries[i * FIELDS + 2] = intern(descriptor.getLicenseName(), strings, indexes);
+      entries[i * FIELDS + 3] = intern(descriptor.getRegex(), strings, indexes);
+    }
+
+    final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(MAGIC);
+    data.writeInt(FORMAT_VERSION);
+    data.writeInt(strings.size());
+    for (final String string : strings) {
+      data.writeUTF(string);
+    }
+    data.writeInt(descriptors.size());
+    for (final int entry : entries) {
+      data.writeInt(entry);
+    }
+    data.flush();
+  }
+
+  /**
+   * @param in
+   * @return the descriptors, in table order
+   * @throws IOException if the input isn't a table of this format version
+   */
+  public static List<LicenseDescriptor> read(final InputStream in) throws IOException
+  {
+    final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a license database");
+    }
+    final int version = data.readInt();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported license database version " + version);
+    }
+    final String[] strings = new String[data.readInt()];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = data.readUTF();
+    }
+    final int count = data.readInt();
+    final List<LicenseDescriptor> descriptors = new ArrayList<LicenseDescriptor>(count);
+    for (int i = 0; i < count; i++) {
+      final LicenseDescriptor descriptor = new LicenseDescriptor();
+      descriptor.setCode(string(strings, data.readInt()));
+      descriptor.setAlternativeCode(string(strings, data.readInt()));
+      descriptor.setLicenseName(string(strings, data.readInt()));
+      descriptor.setRegex(string(strings, data.readInt()));
+      descriptors.add(descriptor);
+    }
+    return descriptors;
+  }
+
+  private static int intern(final String string, final List<String> strings, final Map<String, Integer> indexes)
+  {
+    if (string == null) {
+      return -1;
+    }
+    Integer index = indexes.get(string);
+    if (index == null) {
+      index = strings.size();
+      strings.add(string);
+      indexes.put(string, index);
+    }
+    return index;
+  }
+
+  private static String string(final String[] strings, final int index) throws IOException
+  {
+    if (index == -1) {
+      return null;
+    }
+    if (index < 0 || index >= strings.length) {
+      throw new IOException("Corrupt license database");
+    }
+    return strings[index];
+  }
+}
@@ -0,0 +1,322 @@
+package org.complykit.licensecheck.license;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An SPDX style license expression: licenses combined with AND (all of them apply), OR (pick one) and WITH (a license
+ * with an exception), grouped with parentheses. Only the upper case operators count, so that free text names like
+ * "GPL v2 with Classpath exception" stay a single license.
+ *
+ * The operands don't have to be SPDX ids: the license names found in poms are parsed into a tree of names, which
+ * {@link #toCode(LicenseCodeMemo)} turns into an expression of license codes; that one is parsed again (once per
+ * policy, see {@link LicensePolicy}) to decide on it. A name that isn't an expression, or doesn't parse, is a single
+ * license.
+ */
+public abstract class LicenseExpression
+{
+  /**
+   * Stands for a license that isn't recognized.
+   */
+  public static final String NO_ASSERTION = "NOASSERTION";
+
+  private static final String AND = "AND";
+  private static final String OR = "OR";
+  private static final String WITH = "WITH";
+
+  /**
+   * A single license.
+   */
+  static final class Term extends LicenseExpression
+  {
+    final String text;
+
+    Term(final String text)
+    {
+      this.text = text;
+    }
+
+    @Override
+    String code(final LicenseCodeMemo memo)
+    {
+      return memo.findNameCode(text);
+    }
+
+    @Override
+    LicensePolicy.Decision evaluate(final LicensePolicy policy)
+    {
+      return NO_ASSERTION.equals(text) ? LicensePolicy.Decision.NO_INFO : policy.decide(text);
+    }
+  }
+
+  /**
+   * Several licenses joined with the same operator.
+   */
+  static final class Compound extends LicenseExpression
+  {
+    final String operator;
+    final List<LicenseExpression> operands;
+
+    Compound(final String operator, final List<LicenseExpression> operands)
+    {
+      this.operator = operator;
+      this.operands = operands;
+    }
+
+    @Override
+    String code(final LicenseCodeMemo memo)
+    {
+      final StringBuilder code = new StringBuilder();
+      boolean recognized = false;
+      for (final LicenseExpression operand : operands) {
+        if (code.length() > 0) {
+          code.append(' ').append(operator).append(' ');
+        }
+        final String operandCode = operand.code(memo);
+        if (operandCode == null) {
+          code.append(NO_ASSERTION);
+        } else {
+          recognized = true;
+          code.append(operand instanceof Compound ? "(" + operandCode + ")" : operandCode);
+        }
+      }
+      return recognized ? code.toString() : null;
+    }
+
+    @Override
+    LicensePolicy.Decision evaluate(final LicensePolicy policy)
+    {
+      // the decisions are ordered from worst to best: OR takes the best operand, AND the worst
+      LicensePolicy.Decision result = null;
+      for (final LicenseExpression operand : operands) {
+        final LicensePolicy.Decision decision = operand.evaluate(policy);
+        if (result == null || (OR.equals(operator) ? decision.compareTo(result) > 0
+            : decision.compareTo(result) < 0)) {
+          result = decision;
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * A license with an exception. The exception is kept for display, the decision is the license's.
+   */
+  static final class With extends LicenseExpression
+  {
+    final LicenseExpression license;
+    final String exception;
+
+    With(final LicenseExpression license, final String exception)
+    {
+      this.license = license;
+      this.exception = exception;
+    }
+
+    @Override
+    String code(final LicenseCodeMemo memo)
+    {
+      final String code = license.code(memo);
+      if (code == null) {
+        return null;
+      }
+      return (license instanceof Compound ? "(" + code + ")" : code) + " " + WITH + " " + exception;
+    }
+
+    @Override
+    LicensePolicy.Decision evaluate(final LicensePolicy policy)
+    {
+      return license.evaluate(policy);
+    }
+  }
+
+  LicenseExpression()
+  {
+  }
+
+  /**
+   * @param text a license name, possibly an expression
+   * @return true if the text contains an operator
+   */
+  public static boolean isExpression(final String text)
+  {
+    // this runs for every license name, so no tokenizing
+    for (int i = text.indexOf(' '); i >= 0; i = text.indexOf(' ', i + 1)) {
+      if (isOperatorAt(text, i + 1, AND) || isOperatorAt(text, i + 1, OR) || isOperatorAt(text, i + 1, WITH)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isOperatorAt(final String text, final int start, final String operator)
+  {
+    final int end = start + operator.length();
+    if (!text.startsWith(operator, start)) {
+      return false;
+    }
+    return end == text.length() || Character.isWhitespace(text.charAt(end)) || text.charAt(end) == '(';
+  }
+
+  /**
+   * @param text a license name or expression
+   * @return the parsed expression, a single license if the text doesn't parse
+   */
+  public static LicenseExpression parse(final String text)
+  {
+    final List<String> tokens = tokenize(text);
+    final Parser parser = new Parser(tokens);
+    final LicenseExpression expression = parser.parseOr();
+    if (expression == null || parser.position != tokens.size()) {
+      return new Term(text.trim());
+    }
+    return expression;
+  }
+
+  /**
+   * @param memo converts the names of single licenses
+   * @return the license code (of a single license), an expression of codes in which unrecognized licenses are
+   *         {@link #NO_ASSERTION}, or null if no license at all is recognized
+   */
+  public String toCode(final LicenseCodeMemo memo)
+  {
+    return code(memo);
+  }
+
+  abstract String code(LicenseCodeMemo memo);
+
+  abstract LicensePolicy.Decision evaluate(LicensePolicy policy);
+
+  /**
+   * Splits at whitespace and around parentheses.
+   */
+  static List<String> tokenize(final String text)
+  {
+    final List<String> tokens = new ArrayList<String>();
+    final StringBuilder token = new StringBuilder();
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (Character.isWhitespace(c) || c == '(' || c == ')') {
+        if (token.length() > 0) {
+          tokens.add(token.toString());
+          token.setLength(0);
+        }
+        if (c == '(' || c == ')') {
+          tokens.add(String.valueOf(c));
+        }
+      } else {
+        token.append(c);
+      }
+    }
+    if (token.length() > 0) {
+      tokens.add(token.toString());
+    }
+    return tokens;
+  }
+
+  /**
+   * Recursive descent, with OR binding weaker than AND and AND weaker than WITH. Returns null on syntax errors.
+   */
+  private static final class Parser
+  {
+    private final List<String> tokens;
+    int position;
+
+    Parser(final List<String> tokens)
+    {
+      this.tokens = tokens;
+    }
+
+    LicenseExpression parseOr()
+    {
+      return parseCompound(OR);
+    }
+
+    private LicenseExpression parseCompound(final String operator)
+    {
+      final List<LicenseExpression> operands = new ArrayList<LicenseExpression>();
+      while (true) {
+        final LicenseExpression operand = OR.equals(operator) ? parseCompound(AND) : parseWith();
+        if (operand == null) {
+          return null;
+        }
+        operands.add(operand);
+        if (!operator.equals(peek())) {
+          break;
+        }
+        position++;
+      }
+      return operands.size() == 1 ? operands.get(0) : new Compound(operator, Collections.unmodifiableList(operands));
+    }
+
+    private LicenseExpression parseWith()
+    {
+      final LicenseExpression license = parsePrimary();
+      if (license == null || !WITH.equals(peek())) {
+        return license;
+      }
+      position++;
+      final StringBuilder exception = new StringBuilder();
+      while (isWord(peek())) {
+        exception.append(exception.length() == 0 ? "" : "-").append(tokens.get(position++));
+      }
+      return exception.length() == 0 ? null : new With(license, exception.toString());
+    }
+
+    private LicenseExpression parsePrimary()
+    {
+      if ("(".equals(peek())) {
+        position++;
+        final LicenseExpression expression = parseOr();
+        if (expression == null || !")".equals(peek())) {
+          return null;
+        }
+        position++;
+        return expression;
+      }
+      // a name, parentheses right after it are part of it: "The MIT License (MIT)"
+      final StringBuilder name = new StringBuilder();
+      while (isWord(peek()) || name.length() > 0 && "(".equals(peek())) {
+        if ("(".equals(peek())) {
+          final int end = closingParenthesis(position);
+          if (end < 0) {
+            return null;
+          }
+          name.append(' ');
+          for (int i = position; i <= end; i++) {
+            name.append(tokens.get(i));
+          }
+          position = end + 1;
+        } else {
+          name.append(name.length() == 0 ? "" : " ").append(tokens.get(position++));
+        }
+      }
+      return name.length() == 0 ? null : new Term(name.toString());
+    }
+
+    private int closingParenthesis(final int open)
+    {
+      int depth = 0;
+      for (int i = open; i < tokens.size(); i++) {
+        if ("(".equals(tokens.get(i))) {
+          depth++;
+        } else if (")".equals(tokens.get(i)) && --depth == 0) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private String peek()
+    {
+      return position < tokens.size() ? tokens.get(position) : null;
+    }
+
+    private static boolean isWord(final String token)
+    {
+      return token != null && !"(".equals(token) && !")".equals(token) && !AND.equals(token) && !OR.equals(token)
+          && !WITH.equals(token);
+    }
+  }
+}
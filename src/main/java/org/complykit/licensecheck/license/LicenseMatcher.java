@@ -0,0 +1,499 @@
+package org.complykit.licensecheck.license;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.complykit.licensecheck.model.LicenseDescriptor;
+
+/**
+ * Converts license names into license codes using the descriptor table. The table is compiled once and the result is
+ * immutable, so a single instance is shared by all mojo executions in the JVM (see {@link #getDefault()}).
+ *
+ * The regexes in the table are conjunctions of keyword lookaheads like <code>(?=.*apache)(?=.*2\.0)</code> or
+ * <code>(?!.*2)</code>. Instead of running each of them in turn, all keywords go into a single Aho-Corasick automaton
+ * that records where each keyword last occurs in one pass over the license name. Every descriptor can then be decided
+ * by comparing a few integers, in table order, so the first matching descriptor still wins. Regexes that don't have
+ * that shape (and names spanning several lines, where <code>.</code> stops matching) fall back to the precompiled
+ * patterns, with exactly the semantics of <code>Pattern.compile(regex, CASE_INSENSITIVE).matcher(name).find()</code>.
+ *
+ * Before any of that, names are looked up in the {@link SpdxLicenseIndex}, if there is one. The default matcher has
+ * one, built from the SPDX license list bundled with the plugin; most license names in poms are found there.
+ */
+public final class LicenseMatcher
+{
+  private static final String DEFAULT_RESOURCE = "/licenses.txt";
+
+  /*
+   * generated from DEFAULT_RESOURCE at build time, see LicenseDatabase
+   */
+  private static final String DATABASE_RESOURCE = "/licenses.bin";
+
+  private static final String SPDX_RESOURCE = "/spdx-licenses.json";
+
+  private static final String ALIASES_RESOURCE = "/license-aliases.txt";
+
+  private static final Pattern LOOKAHEAD = Pattern.compile("\\(\\?([=!])\\.\\*((?:[A-Za-z0-9 _,/'\"-]|\\\\\\.)+)\\)");
+
+  private static final int ALPHABET = 128;
+
+  private static volatile LicenseMatcher defaultMatcher;
+
+  private final List<LicenseDescriptor> descriptors;
+  private final SpdxLicenseIndex index;
+  private final String[] codes;
+  private final String[] regexes;
+  /*
+   * compiled up front if the automaton can't decide the descriptor, on first use (multi-line names) otherwise
+   */
+  private final AtomicReferenceArray<Pattern> patterns;
+  private final String fingerprint;
+
+  /*
+   * the distinct codes, numbered densely in table order
+   */
+  private final Map<String, Integer> codeIds = new HashMap<String, Integer>();
+
+  /*
+   * per descriptor: the ids of the keywords that must/must not occur, null if the descriptor needs its pattern
+   */
+  private final int[][] required;
+  private final int[][] forbidden;
+
+  /*
+   * the keyword automaton
+   */
+  private final int[] keywordLength;
+  private final int[][] transitions;
+  private final int[][] matches;
+
+  public LicenseMatcher(final List<LicenseDescriptor> descriptors)
+  {
+    this(descriptors, null);
+  }
+
+  /**
+   * @param descriptors
+   * @param index names looked up before the regexes are tried, may be null
+   */
+  public LicenseMatcher(final List<LicenseDescriptor> descriptors, final SpdxLicenseIndex index)
+  {
+    this.index = index;
+    this.descriptors = Collections.unmodifiableList(new ArrayList<LicenseDescriptor>(descriptors));
+    final int count = descriptors.size();
+    codes = new String[count];
+    regexes = new String[count];
+    patterns = new AtomicReferenceArray<Pattern>(count);
+    required = new int[count][];
+    forbidden = new int[count][];
+
+    final Map<String, Integer> keywordIds = new HashMap<String, Integer>();
+    final List<String> keywords = new ArrayList<String>();
+    for (int i = 0; i < count; i++) {
+      final LicenseDescriptor descriptor = descriptors.get(i);
+      codes[i] = descriptor.getCode();
+      if (!codeIds.containsKey(toLowerCaseAscii(codes[i]))) {
+        codeIds.put(toLowerCaseAscii(codes[i]), codeIds.size());
+      }
+      regexes[i] = descriptor.getRegex();
+
+      final List<Integer> positive = new ArrayList<Integer>();
+      final List<Integer> negative = new ArrayList<Integer>();
+      if (parseLookaheads(descriptor.getRegex(), keywordIds, keywords, positive, negative)) {
+        // only letters, digits and a few literal characters: always compiles
+        required[i] = toArray(positive);
+        forbidden[i] = toArray(negative);
+      } else {
+        patterns.set(i, Pattern.compile(descriptor.getRegex(), Pattern.CASE_INSENSITIVE));
+      }
+    }
+
+    keywordLength = new int[keywords.size()];
+    for (int i = 0; i < keywordLength.length; i++) {
+      keywordLength[i] = keywords.get(i).length();
+    }
+    final List<int[]> transitionList = new ArrayList<int[]>();
+    final List<int[]> matchList = new ArrayList<int[]>();
+    buildAutomaton(keywords, transitionList, matchList);
+    transitions = transitionList.toArray(new int[transitionList.size()][]);
+    matches = matchList.toArray(new int[matchList.size()][]);
+    fingerprint = computeFingerprint(descriptors, index);
+  }
+
+  /**
+   * @return the matcher for the descriptor table bundled with the plugin, compiled on first use from the binary table
+   *         generated at build time, or from the text table if that one is missing
+   */
+  public static LicenseMatcher getDefault()
+  {
+    if (defaultMatcher == null) {
+      loadDefault();
+    }
+    return defaultMatcher;
+  }
+
+  private static synchronized void loadDefault()
+  {
+    if (defaultMatcher == null) {
+      List<LicenseDescriptor> descriptors = null;
+      final InputStream database = LicenseMatcher.class.getResourceAsStream(DATABASE_RESOURCE);
+      if (database != null) {
+        try {
+          try {
+            descriptors = LicenseDatabase.read(database);
+          } finally {
+            database.close();
+          }
+        } catch (final IOException e) {
+          // an older format or broken, the text table is the source anyway
+        }
+      }
+      if (descriptors == null) {
+        descriptors = loadTextResource();
+      }
+      defaultMatcher = new LicenseMatcher(descriptors, loadIndex(descriptors));
+    }
+  }
+
+  private static List<LicenseDescriptor> loadTextResource()
+  {
+    final InputStream in = LicenseMatcher.class.getResourceAsStream(DEFAULT_RESOURCE);
+    if (in == null) {
+      throw new IllegalStateException("Missing resource " + DEFAULT_RESOURCE);
+    }
+    try {
+      try {
+        return loadDescriptors(in);
+      } finally {
+        in.close();
+      }
+    } catch (final IOException e) {
+      throw new IllegalStateException("Cannot read " + DEFAULT_RESOURCE, e);
+    }
+  }
+
+  private static SpdxLicenseIndex loadIndex(final List<LicenseDescriptor> descriptors)
+  {
+    final InputStream licenseList = LicenseMatcher.class.getResourceAsStream(SPDX_RESOURCE);
+    if (licenseList == null) {
+      return null;
+    }
+    try {
+      final InputStream aliases = LicenseMatcher.class.getResourceAsStream(ALIASES_RESOURCE);
+      try {
+        return SpdxLicenseIndex.load(licenseList, aliases, descriptors);
+      } finally {
+        licenseList.close();
+        if (aliases != null) {
+          aliases.close();
+        }
+      }
+    } catch (final IOException e) {
+      throw new IllegalStateException("Cannot read " + SPDX_RESOURCE, e);
+    }
+  }
+
+  /**
+   * Reads a tab delimited descriptor table: code, alternative code, license name, regex and any number of columns
+   * that aren't used here.
+   *
+   * @param in
+   * @return the descriptors, in table order
+   * @throws IOException
+   */
+  public static List<LicenseDescriptor> loadDescriptors(final InputStream in) throws IOException
+  {
+    final List<LicenseDescriptor> loaded = new ArrayList<LicenseDescriptor>();
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.length() == 0) {
+        continue;
+      }
+      final String columns[] = line.split("\\t");
+      final LicenseDescriptor descriptor = new LicenseDescriptor();
+      descriptor.setCode(columns[0]);
+      descriptor.setAlternativeCode(columns[1]);
+      descriptor.setLicenseName(columns[2]);
+      descriptor.setRegex(columns[3]);
+      loaded.add(descriptor);
+    }
+    return loaded;
+  }
+
+  public List<LicenseDescriptor> getDescriptors()
+  {
+    return descriptors;
+  }
+
+  /**
+   * @return a digest of the codes and regexes, so results derived with different tables can be told apart
+   */
+  public String getFingerprint()
+  {
+    return fingerprint;
+  }
+
+  /**
+   * @param code a license code, in any case
+   * @return the dense id of the code, between 0 and {@link #getCodeCount()} - 1, or -1 if it's not in the table
+   */
+  public int getCodeId(final String code)
+  {
+    if (code == null) {
+      return -1;
+    }
+    Integer id = codeIds.get(code);
+    if (id == null) {
+      id = codeIds.get(toLowerCaseAscii(code));
+    }
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * @return the number of distinct codes in the table
+   */
+  public int getCodeCount()
+  {
+    return codeIds.size();
+  }
+
+  /**
+   * @return the index in front of the regexes, null if there is none
+   */
+  public SpdxLicenseIndex getIndex()
+  {
+    return index;
+  }
+
+  /**
+   * @param licenseName
+   * @return the code the index maps the name to, or else the code of the first descriptor that matches the name, or
+   *         null
+   */
+  public String findCode(final String licenseName)
+  {
+    if (licenseName == null) {
+      return null;
+    }
+    if (index != null) {
+      final String code = index.findCode(licenseName);
+      if (code != null) {
+        return code;
+      }
+    }
+    final int length = licenseName.length();
+    final boolean multiLine = containsLineTerminator(licenseName);
+
+    final int[] lastOccurrence = new int[keywordLength.length];
+    Arrays.fill(lastOccurrence, -1);
+    int state = 0;
+    for (int i = 0; i < length; i++) {
+      char c = licenseName.charAt(i);
+      if (c >= ALPHABET) {
+        state = 0;
+        continue;
+      }
+      if (c >= 'A' && c <= 'Z') {
+        c += 'a' - 'A';
+      }
+      state = transitions[state][c];
+      for (final int keyword : matches[state]) {
+        lastOccurrence[keyword] = i - keywordLength[keyword] + 1;
+      }
+    }
+
+    for (int i = 0; i < codes.length; i++) {
+      final boolean found;
+      if (required[i] == null || multiLine) {
+        found = pattern(i).matcher(licenseName).find();
+      } else {
+        found = matches(required[i], forbidden[i], lastOccurrence, length);
+      }
+      if (found) {
+        return codes[i];
+      }
+    }
+    return null;
+  }
+
+  private Pattern pattern(final int i)
+  {
+    Pattern pattern = patterns.get(i);
+    if (pattern == null) {
+      pattern = Pattern.compile(regexes[i], Pattern.CASE_INSENSITIVE);
+      patterns.compareAndSet(i, null, pattern);
+    }
+    return pattern;
+  }
+
+  /**
+   * A lookahead conjunction matches at position p if every required keyword occurs at or after p and no forbidden
+   * keyword does. find() succeeds if there's any such p between 0 and the length of the name.
+   */
+  private static boolean matches(final int[] required, final int[] forbidden, final int[] lastOccurrence,
+      final int length)
+  {
+    int latestStart = length;
+    for (final int keyword : required) {
+      latestStart = Math.min(latestStart, lastOccurrence[keyword]);
+    }
+    int earliestStart = 0;
+    for (final int keyword : forbidden) {
+      earliestStart = Math.max(earliestStart, lastOccurrence[keyword] + 1);
+    }
+    return earliestStart <= latestStart;
+  }
+
+  private static boolean containsLineTerminator(final String s)
+  {
+    for (int i = 0; i < s.length(); i++) {
+      final char c = s.charAt(i);
+      if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean parseLookaheads(final String regex, final Map<String, Integer> keywordIds,
+      final List<String> keywords, final List<Integer> positive, final List<Integer> negative)
+  {
+    final Matcher matcher = LOOKAHEAD.matcher(regex);
+    int position = 0;
+    while (position < regex.length()) {
+      matcher.region(position, regex.length());
+      if (!matcher.lookingAt()) {
+        return false;
+      }
+      final String keyword = toLowerCaseAscii(matcher.group(2).replace("\\.", "."));
+      Integer id = keywordIds.get(keyword);
+      if (id == null) {
+        id = keywords.size();
+        keywords.add(keyword);
+        keywordIds.put(keyword, id);
+      }
+      ("=".equals(matcher.group(1)) ? positive : negative).add(id);
+      position = matcher.end();
+    }
+    return position > 0;
+  }
+
+  /**
+   * Builds a dense Aho-Corasick automaton: state 0 is the root, every state has a transition for every ASCII
+   * character and knows all keywords that end in it.
+   */
+  private static void buildAutomaton(final List<String> keywords, final List<int[]> transitions,
+      final List<int[]> matches)
+  {
+    final List<List<Integer>> output = new ArrayList<List<Integer>>();
+    transitions.add(newState());
+    output.add(new ArrayList<Integer>());
+    for (int k = 0; k < keywords.size(); k++) {
+      int state = 0;
+      for (final char c : keywords.get(k).toCharArray()) {
+        if (transitions.get(state)[c] <= 0) {
+          transitions.get(state)[c] = transitions.size();
+          transitions.add(newState());
+          output.add(new ArrayList<Integer>());
+        }
+        state = transitions.get(state)[c];
+      }
+      output.get(state).add(k);
+    }
+
+    final int[] failure = new int[transitions.size()];
+    final Queue<Integer> queue = new ArrayDeque<Integer>();
+    final int[] root = transitions.get(0);
+    for (int c = 0; c < ALPHABET; c++) {
+      if (root[c] > 0) {
+        failure[root[c]] = 0;
+        queue.add(root[c]);
+      } else {
+        root[c] = 0;
+      }
+    }
+    while (!queue.isEmpty()) {
+      final int state = queue.remove();
+      output.get(state).addAll(output.get(failure[state]));
+      final int[] next = transitions.get(state);
+      for (int c = 0; c < ALPHABET; c++) {
+        final int fallback = transitions.get(failure[state])[c];
+        if (next[c] > 0) {
+          failure[next[c]] = fallback;
+          queue.add(next[c]);
+        } else {
+          next[c] = fallback;
+        }
+      }
+    }
+    for (final List<Integer> ids : output) {
+      matches.add(toArray(ids));
+    }
+  }
+
+  private static int[] newState()
+  {
+    final int[] state = new int[ALPHABET];
+    Arrays.fill(state, -1);
+    return state;
+  }
+
+  private static int[] toArray(final List<Integer> list)
+  {
+    final int[] result = new int[list.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = list.get(i);
+    }
+    return result;
+  }
+
+  private static String toLowerCaseAscii(final String s)
+  {
+    final char[] chars = s.toCharArray();
+    for (int i = 0; i < chars.length; i++) {
+      if (chars[i] >= 'A' && chars[i] <= 'Z') {
+        chars[i] += 'a' - 'A';
+      }
+    }
+    return new String(chars);
+  }
+
+  private static String computeFingerprint(final List<LicenseDescriptor> descriptors, final SpdxLicenseIndex index)
+  {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      for (final LicenseDescriptor descriptor : descriptors) {
+        digest.update((descriptor.getCode() + "\t" + descriptor.getRegex() + "\n").getBytes("UTF-8"));
+      }
+      if (index != null) {
+        for (final Map.Entry<String, String> entry : index.getEntries().entrySet()) {
+          digest.update(("=" + entry.getKey() + "\t" + entry.getValue() + "\n").getBytes("UTF-8"));
+        }
+      }
+      final StringBuilder builder = new StringBuilder();
+      for (final byte b : digest.digest()) {
+        builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return builder.toString();
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    } catch (final IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package org.complykit.licensecheck.license;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The blacklist and the whitelist, compiled against the code ids of a {@link LicenseMatcher}: one bit per code says
+ * whether it's denied, another whether it's allowed. Deciding on a license is then a bit test instead of lower casing
+ * its code and looking it up in a set of strings.
+ *
+ * The blacklist wins over the whitelist. An empty whitelist allows every license that isn't blacklisted, a non-empty
+ * one only the licenses on it, even if none of its codes are in the table.
+ *
+ * Codes that are {@link LicenseExpression}s are decided by their best alternative (OR) or worst component (AND). Each
+ * distinct expression is parsed and decided once per policy.
+ */
+public final class LicensePolicy
+{
+  private static final Locale LOCALE = Locale.ENGLISH;
+
+  /**
+   * Ordered from worst to best.
+   */
+  public enum Decision
+  {
+    DENIED,
+    /**
+     * Not recognized, only part of expressions can be.
+     */
+    NO_INFO,
+    /**
+     * Not on the whitelist.
+     */
+    UNKNOWN,
+    ALLOWED
+  }
+
+  private final LicenseMatcher matcher;
+  private final BitSet denied = new BitSet();
+  private final BitSet allowed = new BitSet();
+  private final boolean whitelistActive;
+  private final ConcurrentMap<String, Decision> expressions = new ConcurrentHashMap<String, Decision>();
+
+  /*
+   * for codes that aren't in the table
+   */
+  private final Set<String> blacklist = new HashSet<String>();
+  private final Set<String> whitelist = new HashSet<String>();
+
+  /**
+   * @param matcher provides the code ids
+   * @param blacklist the denied codes, in any case
+   * @param whitelist the allowed codes, in any case; empty to allow everything that isn't denied
+   */
+  public LicensePolicy(final LicenseMatcher matcher, final Collection<String> blacklist,
+      final Collection<String> whitelist)
+  {
+    this.matcher = matcher;
+    for (final String code : blacklist) {
+      this.blacklist.add(code.toLowerCase(LOCALE));
+      final int id = matcher.getCodeId(code);
+      if (id >= 0) {
+        denied.set(id);
+      }
+    }
+    for (final String code : whitelist) {
+      this.whitelist.add(code.toLowerCase(LOCALE));
+      final int id = matcher.getCodeId(code);
+      if (id >= 0) {
+        allowed.set(id);
+      }
+    }
+    whitelistActive = !whitelist.isEmpty();
+  }
+
+  /**
+   * @param codeId see {@link LicenseMatcher#getCodeId(String)}
+   * @return the decision on the license
+   */
+  public Decision decide(final int codeId)
+  {
+    if (denied.get(codeId)) {
+      return Decision.DENIED;
+    }
+    if (whitelistActive && !allowed.get(codeId)) {
+      return Decision.UNKNOWN;
+    }
+    return Decision.ALLOWED;
+  }
+
+  /**
+   * @param code a license code, possibly one that isn't in the table, or an expression of codes
+   * @return the decision on the license
+   */
+  public Decision decide(final String code)
+  {
+    final int id = matcher.getCodeId(code);
+    if (id >= 0) {
+      return decide(id);
+    }
+    if (code.indexOf(' ') >= 0) {
+      Decision decision = expressions.get(code);
+      if (decision == null) {
+        decision = LicenseExpression.parse(code).evaluate(this);
+        expressions.putIfAbsent(code, decision);
+      }
+      return decision;
+    }
+    final String lowerCase = code.toLowerCase(LOCALE);
+    if (blacklist.contains(lowerCase)) {
+      return Decision.DENIED;
+    }
+    if (whitelistActive && !whitelist.contains(lowerCase)) {
+      return Decision.UNKNOWN;
+    }
+    return Decision.ALLOWED;
+  }
+
+  /**
+   * @return the denied codes, lower case
+   */
+  public Set<String> getBlacklist()
+  {
+    return Collections.unmodifiableSet(blacklist);
+  }
+
+  /**
+   * @return the allowed codes, lower case
+   */
+  public Set<String> getWhitelist()
+  {
+    return Collections.unmodifiableSet(whitelist);
+  }
+
+  public boolean isWhitelistActive()
+  {
+    return whitelistActive;
+  }
+}
@@ -0,0 +1,252 @@
+package org.complykit.licensecheck.license;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.complykit.licensecheck.model.LicenseDescriptor;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Maps license names to codes with a single hash lookup: the ids and names of the SPDX license list, plus a list of
+ * aliases for names that poms commonly use, are indexed by their {@link #normalize(String) normalized} form.
+ *
+ * SPDX ids are tied to the codes of the descriptor table through its second column (the alternative code); suffixes
+ * like <code>-only</code> and <code>-or-later</code> are dropped for that, since the table doesn't tell them apart.
+ * SPDX licenses that aren't in the table are left out, and so are names that would map to more than one code. Names
+ * that aren't in the index are left to the regexes of the {@link LicenseMatcher}.
+ */
+public final class SpdxLicenseIndex
+{
+  private static final Locale LOCALE = Locale.ENGLISH;
+
+  private static final String[] SUFFIXES = { "-only", "-or-later", "+" };
+
+  /**
+   * The parts of the SPDX license list JSON (licenses.json) that are used here.
+   */
+  private static final class LicenseList
+  {
+    String licenseListVersion;
+    List<License> licenses;
+  }
+
+  private static final class License
+  {
+    String licenseId;
+    String name;
+  }
+
+  private final String licenseListVersion;
+  private final Map<String, String> codes;
+
+  private SpdxLicenseIndex(final String licenseListVersion, final Map<String, String> codes)
+  {
+    this.licenseListVersion = licenseListVersion;
+    this.codes = Collections.unmodifiableMap(codes);
+  }
+
+  /**
+   * @param licenseList the SPDX license list, in its JSON format
+   * @param aliases tab delimited: a license name and the SPDX id it stands for; blank lines and lines starting with #
+   *          are ignored; may be null
+   * @param descriptors the descriptor table the SPDX ids are mapped to
+   * @return the index
+   * @throws IOException if the license list cannot be read or parsed
+   */
+  public static SpdxLicenseIndex load(final InputStream licenseList, final InputStream aliases,
+      final List<LicenseDescriptor> descriptors) throws IOException
+  {
+    final Map<String, String> codesById = new HashMap<String, String>();
+    for (final LicenseDescriptor descriptor : descriptors) {
+      for (final String id : new String[] { descriptor.getCode(), descriptor.getAlternativeCode() }) {
+        if (id != null && !codesById.containsKey(id.toLowerCase(LOCALE))) {
+          codesById.put(id.toLowerCase(LOCALE), descriptor.getCode());
+        }
+      }
+    }
+
+    final LicenseList list;
+    final Reader reader = new InputStreamReader(licenseList, "UTF-8");
+    try {
+      list = new Gson().fromJson(reader, LicenseList.class);
+    } catch (final JsonParseException e) {
+      throw new IOException("Cannot parse the SPDX license list: " + e.getMessage(), e);
+    }
+    if (list == null || list.licenses == null) {
+      throw new IOException("Not an SPDX license list");
+    }
+
+    final Map<String, String> codes = new TreeMap<String, String>();
+    final Set<String> ambiguous = new HashSet<String>();
+    final Map<String, String> codesBySpdxId = new HashMap<String, String>();
+    for (final License license : list.licenses) {
+      if (license == null || license.licenseId == null) {
+        continue;
+      }
+      final String code = findCode(license.licenseId, codesById);
+      if (code == null) {
+        continue;
+      }
+      codesBySpdxId.put(license.licenseId.toLowerCase(LOCALE), code);
+      add(codes, ambiguous, license.licenseId, code);
+      if (license.name != null) {
+        add(codes, ambiguous, license.name, code);
+      }
+    }
+
+    if (aliases != null) {
+      final BufferedReader lines = new BufferedReader(new InputStreamReader(aliases, "UTF-8"));
+      String line;
+      while ((line = lines.readLine()) != null) {
+        if (line.trim().length() == 0 || line.startsWith("#")) {
+          continue;
+        }
+        final String[] columns = line.split("\\t");
+        if (columns.length < 2) {
+          throw new IOException("Invalid alias line: " + line);
+        }
+        final String code = codesBySpdxId.get(columns[1].trim().toLowerCase(LOCALE));
+        if (code != null) {
+          add(codes, ambiguous, columns[0], code);
+        }
+      }
+    }
+    for (final String key : ambiguous) {
+      codes.remove(key);
+    }
+    return new SpdxLicenseIndex(list.licenseListVersion, codes);
+  }
+
+  /**
+   * @param licenseName
+   * @return the code of the license, or null if the name isn't in the index
+   */
+  public String findCode(final String licenseName)
+  {
+    if (licenseName == null) {
+      return null;
+    }
+    return codes.get(normalize(licenseName));
+  }
+
+  /**
+   * @return the normalized names and the codes they map to, sorted by name
+   */
+  public Map<String, String> getEntries()
+  {
+    return codes;
+  }
+
+  public String getLicenseListVersion()
+  {
+    return licenseListVersion;
+  }
+
+  /**
+   * Lower case (ASCII), "licence" spelled "license", without a leading "the", without "version" or "v" in front of
+   * version numbers, and without whitespace and punctuation except for dots within version numbers:
+   * "The Apache License, Version 2.0" becomes "apachelicense2.0", like "Apache-2.0 License".
+   *
+   * @param licenseName
+   * @return the key of the name in the index
+   */
+  public static String normalize(final String licenseName)
+  {
+    final StringBuilder normalized = new StringBuilder(licenseName.length());
+    final StringBuilder word = new StringBuilder();
+    boolean first = true;
+    // "version", "ver" or "v", dropped if a number follows
+    String versionPrefix = null;
+    for (int i = 0; i <= licenseName.length(); i++) {
+      final char c = i < licenseName.length() ? licenseName.charAt(i) : ' ';
+      if (c >= 'A' && c <= 'Z') {
+        word.append((char) (c + 'a' - 'A'));
+        continue;
+      }
+      if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '.' || c >= 0x80) {
+        word.append(c);
+        continue;
+      }
+      trimDots(word);
+      if (word.length() == 0) {
+        continue;
+      }
+      final String text = word.toString();
+      word.setLength(0);
+      final boolean number = Character.isDigit(text.charAt(0));
+      if (versionPrefix != null && !number) {
+        normalized.append(versionPrefix);
+      }
+      versionPrefix = null;
+      if (first && text.equals("the")) {
+        first = false;
+        continue;
+      }
+      first = false;
+      if (text.equals("version") || text.equals("ver") || text.equals("v")) {
+        versionPrefix = text;
+      } else if (text.length() > 1 && text.charAt(0) == 'v' && Character.isDigit(text.charAt(1))) {
+        normalized.append(text, 1, text.length());
+      } else if (text.equals("licence") || text.equals("licences")) {
+        normalized.append("license").append(text, "licence".length(), text.length());
+      } else {
+        normalized.append(text);
+      }
+    }
+    if (versionPrefix != null) {
+      normalized.append(versionPrefix);
+    }
+    return normalized.toString();
+  }
+
+  private static void trimDots(final StringBuilder word)
+  {
+    while (word.length() > 0 && word.charAt(word.length() - 1) == '.') {
+      word.setLength(word.length() - 1);
+    }
+    while (word.length() > 0 && word.charAt(0) == '.') {
+      word.deleteCharAt(0);
+    }
+  }
+
+  private static String findCode(final String spdxId, final Map<String, String> codesById)
+  {
+    String id = spdxId.toLowerCase(LOCALE);
+    String code = codesById.get(id);
+    for (int i = 0; code == null && i < SUFFIXES.length; i++) {
+      if (id.endsWith(SUFFIXES[i])) {
+        id = id.substring(0, id.length() - SUFFIXES[i].length());
+        code = codesById.get(id);
+      }
+    }
+    return code;
+  }
+
+  private static void add(final Map<String, String> codes, final Set<String> ambiguous, final String name,
+      final String code)
+  {
+    final String key = normalize(name);
+    if (key.length() == 0) {
+      return;
+    }
+    final String existing = codes.get(key);
+    if (existing == null) {
+      codes.put(key, code);
+    } else if (!existing.equals(code)) {
+      ambiguous.add(key);
+    }
+  }
+}
@@ -2,6 +2,7 @@ package org.complykit.licensecheck.model;
 
 public class LicenseDescriptor {
 	private String code;
+	private String alternativeCode;
 	private String licenseName;
 	private String regex;
 	
@@ -12,6 +13,16 @@ public class LicenseDescriptor {
 		this.code = code;
 	}
 	
+	/**
+	 * @return the second column of the table, mostly the SPDX id in lower case
+	 */
+	public String getAlternativeCode() {
+		return alternativeCode;
+	}
+	public void setAlternativeCode(String alternativeCode) {
+		this.alternativeCode = alternativeCode;
+	}
+	
 	public String getLicenseName() {
 		return licenseName;
 	}
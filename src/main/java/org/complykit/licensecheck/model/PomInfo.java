@@ -0,0 +1,64 @@
+package org.complykit.licensecheck.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The little bit of a pom the license check cares about.
+ */
+public final class PomInfo {
+	private final List<String> licenseNames;
+	private final String parentCoordinates;
+
+	public PomInfo(String licenseName, String parentCoordinates) {
+		this(licenseName == null ? Collections.<String>emptyList() : Collections.singletonList(licenseName),
+				parentCoordinates);
+	}
+
+	public PomInfo(List<String> licenseNames, String parentCoordinates) {
+		this.licenseNames = Collections.unmodifiableList(licenseNames);
+		this.parentCoordinates = parentCoordinates;
+	}
+
+	/**
+	 * @return the names of all declared licenses, in pom order
+	 */
+	public List<String> getLicenseNames() {
+		return licenseNames;
+	}
+
+	/**
+	 * A pom that declares several licenses lets the user pick one, so they are joined into a single SPDX style
+	 * expression with OR. Names that are expressions themselves are put in parentheses.
+	 *
+	 * @return the name of the declared license, the OR of several, or null
+	 */
+	public String getLicenseName() {
+		if (licenseNames.isEmpty()) {
+			return null;
+		}
+		if (licenseNames.size() == 1) {
+			return licenseNames.get(0);
+		}
+		final StringBuilder expression = new StringBuilder();
+		for (final String name : licenseNames) {
+			if (expression.length() > 0) {
+				expression.append(" OR ");
+			}
+			if (name.contains(" AND ") || name.contains(" OR ") || name.contains(" WITH ")) {
+				expression.append('(').append(name).append(')');
+			} else {
+				expression.append(name);
+			}
+		}
+		return expression.toString();
+	}
+
+	/**
+	 * @return the parent as groupId:artifactId:version, or null if there's no (complete) parent declaration
+	 */
+	public String getParentCoordinates() {
+		return parentCoordinates;
+	}
+
+}
@@ -0,0 +1,110 @@
+package org.complykit.licensecheck.mojo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.complykit.licensecheck.exclude.ExclusionMatcher;
+import org.complykit.licensecheck.license.LicensePolicy;
+
+/**
+ * Checks the dependencies of all the modules of a multi-module build at once. Every artifact is resolved and
+ * classified only once, no matter how many modules depend on it; the results are still reported (and scopes are still
+ * excluded) per module.
+ *
+ * Dependencies between the modules of the build aren't checked, they're part of the project itself.
+ *
+ * Run it on the top-level project, e.g. mvn license-check:os-check-aggregate. It takes the same configuration as
+ * os-check.
+ */
+@Mojo(name = "os-check-aggregate", aggregator = true, threadSafe = true)
+public class AggregateLicenseCheckMojo extends OpenSourceLicenseCheckMojo
+{
+
+  @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+  List<MavenProject> reactorProjects;
+
+  @Override
+  void checkLicenses() throws MojoExecutionException, MojoFailureException
+  {
+    printBanner();
+
+    final Set<String> excludeSet = getAsLowerCaseSet(excludes);
+    final Set<String> excludedScopesSet = getAsLowerCaseSet(excludedScopes);
+    final ExclusionMatcher exclusions = getExclusions();
+    final LicensePolicy policy = getPolicy();
+
+    final Set<String> modules = new HashSet<String>();
+    for (final MavenProject module : reactorProjects) {
+      modules.add(module.getGroupId() + ":" + module.getArtifactId() + ":" + module.getVersion());
+    }
+
+    // the artifacts of each module, and each artifact that needs checking once
+    final Map<MavenProject, List<Artifact>> moduleArtifacts = new LinkedHashMap<MavenProject, List<Artifact>>();
+    final Map<String, Artifact> unique = new LinkedHashMap<String, Artifact>();
+    final List<Artifact> all = new ArrayList<Artifact>();
+    for (final MavenProject module : reactorProjects) {
+      final List<Artifact> artifacts = new ArrayList<Artifact>();
+      for (final Artifact artifact : getArtifacts(module)) {
+        final String coordinates = toCoordinates(artifact);
+        if (modules.contains(coordinates)) {
+          continue;
+        }
+        artifacts.add(artifact);
+        all.add(artifact);
+        if (!unique.containsKey(coordinates)
+            && !artifactIsOnExcludeList(exclusions, excludedScopesSet, artifact)) {
+          unique.put(coordinates, artifact);
+        }
+      }
+      moduleArtifacts.put(module, artifacts);
+    }
+    getLog().info("Validating licenses for " + unique.size() + " artifact(s) in " + reactorProjects.size()
+        + " module(s)");
+
+    final String fingerprint = fingerprint(all, excludeSet, policy, excludedScopesSet);
+    if (isUpToDate(fingerprint)) {
+      return;
+    }
+
+    // scopes are excluded per module below
+    final Map<String, CheckResult> licenses = checkArtifactsWithCache(unique.values(), exclusions,
+        new HashSet<String>(), policy);
+
+    printExplanation();
+    final List<String> failedModules = new ArrayList<String>();
+    for (final Map.Entry<MavenProject, List<Artifact>> entry : moduleArtifacts.entrySet()) {
+      final List<CheckResult> results = new ArrayList<CheckResult>();
+      for (final Artifact artifact : entry.getValue()) {
+        final CheckResult result = licenses.get(toCoordinates(artifact));
+        if (result == null || artifactIsOnExcludeList(exclusions, excludedScopesSet, artifact)) {
+          results.add(new CheckResult(artifact, CheckOutcome.ARTIFACT_EXCLUDED));
+        } else {
+          // the module's own artifact, it carries the module's scope and dependency trail
+          results.add(new CheckResult(artifact, result.licenseCode, result.outcome));
+        }
+      }
+      getLog().info("--[ Licenses found in " + entry.getKey().getId() + " ]------ ");
+      if (report(results)) {
+        failedModules.add(entry.getKey().getId());
+      }
+      getLog().info("");
+    }
+
+    if (!failedModules.isEmpty()) {
+      getLog().info("Modules with license violations:");
+      for (final String module : failedModules) {
+        getLog().info("  " + module);
+      }
+    }
+    conclude(!failedModules.isEmpty(), fingerprint);
+  }
+}
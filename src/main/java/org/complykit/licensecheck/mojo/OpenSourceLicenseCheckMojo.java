@@ -23,26 +23,41 @@ THE SOFTWARE.
  */
 package org.complykit.licensecheck.mojo;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import org.apache.maven.RepositoryUtils;
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -50,10 +65,26 @@ import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
-import org.complykit.licensecheck.model.LicenseDescriptor;
+import org.complykit.licensecheck.cache.DependencyFingerprint;
+import org.complykit.licensecheck.cache.LicenseCache;
+import org.complykit.licensecheck.cache.NegativeCache;
+import org.complykit.licensecheck.exclude.ExclusionMatcher;
+import org.complykit.licensecheck.license.LicenseCodeMemo;
+import org.complykit.licensecheck.license.LicenseMatcher;
+import org.complykit.licensecheck.license.LicensePolicy;
+import org.complykit.licensecheck.model.PomInfo;
+import org.complykit.licensecheck.pom.PomScanner;
+import org.complykit.licensecheck.profile.Profiler;
+import org.complykit.licensecheck.profile.Profiler.Counter;
+import org.complykit.licensecheck.profile.Profiler.Phase;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.ArtifactTypeRegistry;
 import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.repository.LocalRepositoryManager;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.resolution.ArtifactRequest;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
@@ -68,13 +99,13 @@ import org.eclipse.aether.resolution.ArtifactResult;
  *
  * @author michael.rice
  */
-@Mojo(name = "os-check")
+@Mojo(name = "os-check", threadSafe = true)
 public class OpenSourceLicenseCheckMojo extends AbstractMojo
 {
 
   private static final Locale LOCALE = Locale.ENGLISH;
 
-  private enum CheckOutcome
+  enum CheckOutcome
   {
     LICENSE_INVALID_NO_INFO( 0, "INVALID (no license info)" ),
     ARTIFACT_EXCLUDED( 1, "ARTIFACT_EXCLUDED" ),
@@ -92,21 +123,36 @@ public class OpenSourceLicenseCheckMojo extends AbstractMojo
     }
   }
 
-  private static final class CheckResult implements Comparable<CheckResult>
+  /**
+   * The license a parent chain resolved to; the license name is null if no pom on the chain declares one.
+   */
+  static final class CachedLicense
+  {
+    public final String licenseName;
+
+    CachedLicense(String licenseName)
+    {
+      this.licenseName = licenseName;
+    }
+  }
+
+  static final class CheckResult implements Comparable<CheckResult>
   {
     public final CheckOutcome outcome;
     public final Artifact artifact;
     public final String licenseCode;
+    public final String coordinates;
 
-    private CheckResult(Artifact artifact, CheckOutcome status) {
+    CheckResult(Artifact artifact, CheckOutcome status) {
       this(artifact,null,status);
     }
 
-    private CheckResult(Artifact artifact,String licenseCode, CheckOutcome status)
+    CheckResult(Artifact artifact,String licenseCode, CheckOutcome status)
     {
       this.artifact = artifact;
       this.licenseCode = licenseCode;
       this.outcome = status;
+      this.coordinates = toCoordinates(artifact);
     }
 
     public boolean hasStatus(CheckOutcome status) {
@@ -138,8 +184,8 @@ public class OpenSourceLicenseCheckMojo extends AbstractMojo
   @Component
   RepositorySystem repoSystem;
 
-  @Component
-  final MavenProject project = null;
+  @Parameter(defaultValue = "${project}", readonly = true, required = true)
+  MavenProject project;
 
   /**
    * The current repository and network configuration of Maven
@@ -179,6 +225,14 @@ public class OpenSourceLicenseCheckMojo extends AbstractMojo
   @Parameter(property = "os-check.excludesRegex")
   String[] excludesRegex;
 
+  /**
+   * A list of artifacts that should be excluded from consideration, as globs: * stands for any number of characters
+   * within a segment and missing trailing segments match anything. Example: &lt;configuration&gt;
+   * &lt;excludesGlob&gt; &lt;param&gt;com.bigco.*:*:*&lt;/param&gt; &lt;/excludesGlob&gt; &lt;/configuration&gt;
+   */
+  @Parameter(property = "os-check.excludesGlob")
+  String[] excludesGlob;
+
   @Parameter(property = "os-check.excludesNoLicense")
   boolean excludeNoLicense;
 
@@ -207,78 +261,193 @@ public class OpenSourceLicenseCheckMojo extends AbstractMojo
   String[] excludedScopes;
 
   /**
-   * Used to hold the list of license descriptors. Generation is lazy on the first method call to use it.
+   * If set, the whole dependency graph is checked instead of just the direct dependencies. Each artifact is checked
+   * once, violations are reported with the shortest path that pulls the artifact in.
+   */
+  @Parameter(property = "os-check.transitive", defaultValue = "false")
+  boolean transitive;
+
+  /**
+   * If set (the default), only the pom of each dependency is resolved instead of its binary artifact. This avoids
+   * downloading jars that are never looked at. Set to false to resolve the full artifact as earlier versions did.
+   */
+  @Parameter(property = "os-check.resolvePomOnly", defaultValue = "true")
+  boolean resolvePomOnly;
+
+  /**
+   * If set (the default), the dependencies and then their parents are resolved in batches before they are checked,
+   * see {@link #prefetch}. Set to false to resolve each pom when it's needed.
+   */
+  @Parameter(property = "os-check.batchResolve", defaultValue = "true")
+  boolean batchResolve;
+
+  /**
+   * If set, a parent is resolved (and read, and its own parent resolved...) in the background as soon as a pom's
+   * parent element has been read, before it's known whether the pom declares a license itself. Resolving deep parent
+   * chains then overlaps with the rest of the check, at the price of resolving some parents that turn out not to be
+   * needed.
+   */
+  @Parameter(property = "os-check.speculativeParents", defaultValue = "false")
+  boolean speculativeParents;
+
+  /**
+   * If set (the default), the licenses of released artifacts are remembered between builds, so that warm builds
+   * don't have to resolve or read their poms at all.
+   */
+  @Parameter(property = "os-check.cache", defaultValue = "true")
+  boolean useCache;
+
+  /**
+   * Where the cross-build license cache is kept. Defaults to the .license-check directory of the local repository.
+   */
+  @Parameter(property = "os-check.cacheDirectory")
+  File cacheDirectory;
+
+  /**
+   * Poms that cannot be resolved, and artifacts whose parent chain declares no license, are only tried once per build.
+   * If this is positive (and {@link #useCache} is set), they are also remembered in failures.json next to the license
+   * cache, and not tried again for this many hours.
+   */
+  @Parameter(property = "os-check.failureCacheHours", defaultValue = "0")
+  int failureCacheHours;
+
+  /**
+   * The number of worker threads used to resolve and classify the artifacts. Results are still reported in a
+   * deterministic order.
+   */
+  @Parameter(property = "os-check.threads", defaultValue = "4")
+  int threads;
+
+  /**
+   * If set, the time spent in each phase of the check and the cache hit rates are printed at the end of the run and
+   * written to license-check-profile.json in the build directory.
+   */
+  @Parameter(property = "os-check.profile", defaultValue = "false")
+  boolean profile;
+
+  /**
+   * If set, the processing of every artifact (resolving, reading each pom up the parent chain, matching and
+   * classifying the license) is written as spans to license-check-trace.json in the build directory. The file is in
+   * the Chrome trace-event format and can be loaded into chrome://tracing or Perfetto.
+   */
+  @Parameter(property = "os-check.trace", defaultValue = "false")
+  boolean trace;
+
+  /**
+   * The check is skipped if neither the resolved dependencies nor the settings changed since the last successful
+   * check of the project (see {@link DependencyFingerprint}). Set this to check anyway.
+   */
+  @Parameter(property = "os-check.force", defaultValue = "false")
+  boolean force;
+
+  @Parameter(defaultValue = "${project.build.directory}", readonly = true)
+  File outputDirectory;
+
+  @Parameter(defaultValue = "${plugin.version}", readonly = true)
+  String pluginVersion;
+
+  /**
+   * The poms, parents and licenses seen by the checks of this build, see {@link SessionCaches}.
+   */
+  SessionCaches caches = SessionCaches.forSession(null);
+
+  /**
+   * Resolves parents in the background while {@link #speculativeParents} checks are running, null otherwise.
+   */
+  ThreadPoolExecutor parentResolver;
+
+  /**
+   * The parents {@link #parentResolver} has been asked for.
+   */
+  final Set<String> speculatedParents = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /**
+   * The dependencies resolved by {@link #prefetch}, by coordinates.
+   */
+  final Map<String, Artifact> prefetchedDependencies = new ConcurrentHashMap<String, Artifact>();
+
+  /**
+   * The cross-build license cache, null if disabled.
+   */
+  LicenseCache licenseCache;
+
+  /**
+   * The coordinates known to lead nowhere, see {@link #failureCacheHours}.
+   */
+  NegativeCache negativeCache;
+
+  /**
+   * Where the phases of this run are timed, see {@link #profile} and {@link #trace}.
    */
-  List<LicenseDescriptor> descriptors = null;
+  Profiler profiler = Profiler.DISABLED;
 
   public void execute() throws MojoExecutionException, MojoFailureException
   {
+    profiler = profile || trace ? new Profiler(profile, trace) : Profiler.DISABLED;
+    caches = SessionCaches.forSession(repoSession);
+    final LicenseCodeMemo memo = LicenseCodeMemo.getDefault();
+    final long memoHits = memo.getHits();
+    final long memoMisses = memo.getMisses();
+    final long pomHits = caches.poms.getHits();
+    final long pomMisses = caches.poms.getMisses();
+    final long verdictHits = caches.verdicts.getHits();
+    final long verdictMisses = caches.verdicts.getMisses();
+    final long start = profiler.start();
+    try {
+      checkLicenses();
+    } finally {
+      profiler.stop(Phase.TOTAL, start, project.getId());
+      // these are shared with the rest of the build, so parallel modules may show up in here as well
+      profiler.add(Counter.LICENSE_MEMO_HIT, memo.getHits() - memoHits);
+      profiler.add(Counter.LICENSE_MEMO_MISS, memo.getMisses() - memoMisses);
+      profiler.add(Counter.POM_HIT, caches.poms.getHits() - pomHits);
+      profiler.add(Counter.POM_MISS, caches.poms.getMisses() - pomMisses);
+      profiler.add(Counter.VERDICT_HIT, caches.verdicts.getHits() - verdictHits);
+      profiler.add(Counter.VERDICT_MISS, caches.verdicts.getMisses() - verdictMisses);
+      reportProfile();
+      PomScanner.releaseBuffer();
+    }
+  }
 
-    getLog().info("------------------------------------------------------------------------");
-    getLog().info("VALIDATING OPEN SOURCE LICENSES                                         ");
-    getLog().info("------------------------------------------------------------------------");
+  /**
+   * Checks the dependencies of {@link #project}.
+   */
+  void checkLicenses() throws MojoExecutionException, MojoFailureException
+  {
+    printBanner();
 
     final Set<String> excludeSet = getAsLowerCaseSet(excludes);
-    final Set<String> blacklistSet = getAsLowerCaseSet(blacklist);
-    final Set<String> whitelistSet = getAsLowerCaseSet(whitelist);
     final Set<String> excludedScopesSet = getAsLowerCaseSet(excludedScopes);
-    final List<Pattern> excludePatternList = getAsPatternList(excludesRegex);
+    final ExclusionMatcher exclusions = getExclusions();
+    final LicensePolicy policy = getPolicy();
 
-    final Set<Artifact> artifacts = project.getDependencyArtifacts();
+    final Collection<Artifact> artifacts = getArtifacts(project);
     getLog().info("Validating licenses for " + artifacts.size() + " artifact(s)");
 
-    final Map<String, CheckResult> licenses = new HashMap<String, CheckResult>();
+    final String fingerprint = fingerprint(artifacts, excludeSet, policy, excludedScopesSet);
+    if (isUpToDate(fingerprint)) {
+      return;
+    }
 
-    boolean buildFails = false;
-    for (final Artifact artifact : artifacts)
-    {
-      if (!artifactIsOnExcludeList(excludeSet, excludePatternList, excludedScopesSet, artifact))
-      {
-        final ArtifactRequest request = new ArtifactRequest();
-        request.setArtifact(RepositoryUtils.toArtifact(artifact));
-        request.setRepositories(remoteRepos);
+    final Map<String, CheckResult> licenses = checkArtifactsWithCache(artifacts, exclusions, excludedScopesSet,
+        policy);
 
-        ArtifactResult result = null;
-        try {
-          result = repoSystem.resolveArtifact(repoSession, request);
-          getLog().info(result.toString());
-        }
-        catch (final ArtifactResolutionException e)
-        {
-            throw new MojoExecutionException( e.getMessage(), e );
-        }
+    printExplanation();
+    getLog().info("--[ Licenses found ]------ ");
+    final boolean buildFails = report(licenses.values());
 
-        String licenseName = "";
-        final CheckOutcome outcome;
-        try {
-          licenseName = recurseForLicenseName(RepositoryUtils.toArtifact(result.getArtifact()), 0);
-        } catch (IOException e) {
-          getLog().error("Error reading license information", e);
-        }
-        String licenseCode = convertLicenseNameToCode(licenseName);
-        if (licenseCode == null) {
-          outcome = CheckOutcome.LICENSE_INVALID_NO_INFO;
-          if (! excludeNoLicense) {
-            buildFails = true;
-            getLog().warn("Build will fail because of artifact '" + toCoordinates(artifact) + "' and license'" + licenseName + "'.");
-          }
-        } else if ( !blacklistSet.isEmpty() && isContained(blacklistSet, licenseCode)) {
-          outcome = CheckOutcome.LICENSE_INVALID_BLACKLISTED;
-          buildFails = true;
-          licenseCode += " IS ON YOUR BLACKLIST";
-        } else if ( !whitelistSet.isEmpty() && ! isContained(whitelistSet, licenseCode) ) {
-          outcome = CheckOutcome.LICENSE_INVALID_NOT_RECOGNIZED;
-          buildFails = true;
-          licenseCode += " IS NOT ON YOUR WHITELIST";
-        } else {
-          outcome = CheckOutcome.LICENSE_VALID;
-        }
-        licenses.put(toCoordinates(artifact), new CheckResult(artifact,licenseCode,outcome));
-      } else {
-        licenses.put(toCoordinates(artifact), new CheckResult(artifact, CheckOutcome.ARTIFACT_EXCLUDED) );
-      }
-    }
+    conclude(buildFails, fingerprint);
+  }
+
+  void printBanner()
+  {
+    getLog().info("------------------------------------------------------------------------");
+    getLog().info("VALIDATING OPEN SOURCE LICENSES                                         ");
+    getLog().info("------------------------------------------------------------------------");
+  }
 
+  void printExplanation()
+  {
     getLog().info("");
     getLog().info("This plugin validates that the artifacts you're using have a");
     getLog().info("license declared in the pom. It then tries to determine whether ");
@@ -289,16 +458,124 @@ public class OpenSourceLicenseCheckMojo extends AbstractMojo
     getLog().info("This plugin and its author are not associated with the OSI.");
     getLog().info("Please send me feedback: me@michaelrice.com. Thanks!");
     getLog().info("");
+  }
 
-    getLog().info("--[ Licenses found ]------ ");
+  /**
+   * @param project
+   * @return the artifacts of the project to check: its direct dependencies or, see {@link #transitive}, all of them
+   * @throws MojoExecutionException if the dependency graph cannot be collected
+   */
+  Collection<Artifact> getArtifacts(final MavenProject project) throws MojoExecutionException
+  {
+    if (transitive) {
+      final long start = profiler.start();
+      try {
+        return collectTransitiveArtifacts(project);
+      } finally {
+        profiler.stop(Phase.COLLECT, start, project.getId());
+      }
+    }
+    final Set<Artifact> artifacts = project.getDependencyArtifacts();
+    if (artifacts != null) {
+      return artifacts;
+    }
+    // Maven didn't resolve the project's dependencies (an aggregator run, for instance), take them from the model
+    final ArtifactTypeRegistry stereotypes = repoSession.getArtifactTypeRegistry();
+    final List<Artifact> declared = new ArrayList<Artifact>();
+    for (final Dependency dependency : project.getDependencies()) {
+      final org.eclipse.aether.graph.Dependency converted = RepositoryUtils.toDependency(dependency, stereotypes);
+      final Artifact artifact = RepositoryUtils.toArtifact(converted.getArtifact());
+      artifact.setScope(converted.getScope());
+      artifact.setOptional(converted.isOptional());
+      declared.add(artifact);
+    }
+    return declared;
+  }
+
+  /**
+   * @return whether the last successful check had the same fingerprint, in which case there's nothing to do
+   */
+  boolean isUpToDate(final String fingerprint)
+  {
+    if (fingerprint != null && !force && fingerprint.equals(DependencyFingerprint.read(getFingerprintFile()))) {
+      getLog().info("Dependencies and settings unchanged since the last successful check, skipping it (use "
+          + "-Dos-check.force=true to check anyway)");
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * {@link #checkArtifacts} with the cross-build license cache opened before and saved after, and the poms resolved
+   * in batches first (see {@link #batchResolve}).
+   */
+  Map<String, CheckResult> checkArtifactsWithCache(final Collection<Artifact> artifacts,
+      final ExclusionMatcher exclusions, final Set<String> excludedScopesSet, final LicensePolicy policy)
+      throws MojoExecutionException
+  {
+    licenseCache = openLicenseCache();
+    negativeCache = openNegativeCache();
+    if (speculativeParents) {
+      final int poolSize = Math.max(1, threads);
+      parentResolver = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<Runnable>(), newThreadFactory("os-check-parents-"));
+    }
+    try {
+      if (batchResolve) {
+        prefetch(artifacts, exclusions, excludedScopesSet);
+      }
+      return checkArtifacts(artifacts, exclusions, excludedScopesSet, policy);
+    } finally {
+      if (parentResolver != null) {
+        stopParentResolver();
+      }
+      saveLicenseCache();
+      saveNegativeCache();
+    }
+  }
+
+  /**
+   * Drops the speculative resolutions that haven't started and waits for the ones in flight. Interrupting those would
+   * turn healthy parents into failures, see {@link #retrieveParentPom(String)}.
+   */
+  private void stopParentResolver()
+  {
+    final ThreadPoolExecutor resolver = parentResolver;
+    parentResolver = null;
+    resolver.getQueue().clear();
+    resolver.shutdown();
+    try {
+      while (!resolver.awaitTermination(1, TimeUnit.SECONDS)) {
+        getLog().debug("Waiting for " + resolver.getActiveCount() + " parent resolutions to finish");
+      }
+    } catch (final InterruptedException e) {
+      // the build is being cancelled, the resolutions end on their own
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Prints the results, in a deterministic order.
+   *
+   * @return whether any of the results fails the build
+   */
+  boolean report(final Collection<CheckResult> results)
+  {
+    boolean buildFails = false;
+    for (final CheckResult result : results) {
+      if (failsBuild(result)) {
+        buildFails = true;
+      }
+    }
 
-    final List<CheckResult> sorted = new ArrayList<>( licenses.values() );
+    final List<CheckResult> sorted = new ArrayList<>( results );
     Collections.sort( sorted , new Comparator<CheckResult>()
     {
       @Override
       public int compare(CheckResult o1, CheckResult o2)
       {
-        return Integer.compare(o1.outcome.displayOrder,o2.outcome.displayOrder);
+        final int result = Integer.compare(o1.outcome.displayOrder,o2.outcome.displayOrder);
+        return result != 0 ? result : o1.coordinates.compareTo(o2.coordinates);
       }
     } );
 
@@ -309,8 +586,18 @@ public class OpenSourceLicenseCheckMojo extends AbstractMojo
       final String statusPart = rightPad(result.outcome.displayName, 25 );
       final String combined = statusPart + " "+licPart;
       getLog().info( "LICENSE: " + combined +" "+result.artifact );
+      if (transitive && failsBuild(result)) {
+        getLog().info("         via " + describeTrail(result.artifact));
+      }
     }
+    return buildFails;
+  }
 
+  /**
+   * Fails the build or, if all is well, remembers the fingerprint of the check.
+   */
+  void conclude(final boolean buildFails, final String fingerprint) throws MojoFailureException
+  {
     if (buildFails) {
       getLog().info("");
       getLog().info("RESULT: At least one license could not be verified or appears on your blacklist or is not on your whitelist. Build fails.");
@@ -320,281 +607,1162 @@ public class OpenSourceLicenseCheckMojo extends AbstractMojo
     getLog().info("");
     getLog().info("RESULT: license check complete, no issues found.");
     getLog().info("");
+
+    if (fingerprint != null) {
+      try {
+        DependencyFingerprint.write(getFingerprintFile(), fingerprint);
+      } catch (final IOException e) {
+        getLog().warn("Could not write " + getFingerprintFile() + ": " + e.getMessage());
+      }
+    }
   }
 
-  private static String rightPad(String input,int len)
+  /**
+   * @return the fingerprint of this check's input, or null if the check must not be skipped (snapshot dependencies,
+   *         or nowhere to keep the fingerprint)
+   */
+  String fingerprint(final Collection<Artifact> artifacts, final Set<String> excludeSet, final LicensePolicy policy,
+      final Set<String> excludedScopesSet)
   {
-    while ( input.length() < len ) {
-      input += " ";
+    if (outputDirectory == null) {
+      return null;
     }
-    return input;
+    final DependencyFingerprint fingerprint = new DependencyFingerprint();
+    for (final Artifact artifact : artifacts) {
+      fingerprint.addArtifact(toCoordinates(artifact), artifact.getScope());
+    }
+    if (fingerprint.hasSnapshots()) {
+      return null;
+    }
+    fingerprint.addSetting("plugin", pluginVersion);
+    fingerprint.addSetting("licenses", LicenseMatcher.getDefault().getFingerprint());
+    fingerprint.addSetting("excludes", excludeSet);
+    fingerprint.addSetting("excludesRegex", excludesRegex == null ? Collections.<String> emptyList()
+        : Arrays.asList(excludesRegex));
+    fingerprint.addSetting("excludesGlob", getAsLowerCaseSet(excludesGlob));
+    fingerprint.addSetting("excludeNoLicense", excludeNoLicense);
+    fingerprint.addSetting("blacklist", policy.getBlacklist());
+    fingerprint.addSetting("whitelist", policy.getWhitelist());
+    fingerprint.addSetting("excludedScopes", excludedScopesSet);
+    fingerprint.addSetting("transitive", transitive);
+    fingerprint.addSetting("maxSearchDepth", maxSearchDepth);
+    return fingerprint.toHex();
   }
 
-  private static String leftPad(String input,int len)
+  File getFingerprintFile()
   {
-    while ( input.length() < len ) {
-      input = " "+input;
-    }
-    return input;
+    return new File(outputDirectory, "license-check.fingerprint");
   }
 
-  Set<String> getAsLowerCaseSet(final String[] src)
+  /**
+   * Resolves and classifies the artifacts on a bounded pool of worker threads.
+   *
+   * @return the check results, keyed by artifact coordinates
+   */
+  Map<String, CheckResult> checkArtifacts(final Collection<Artifact> artifacts, final ExclusionMatcher exclusions,
+      final Set<String> excludedScopesSet, final LicensePolicy policy) throws MojoExecutionException
   {
-    final Set<String> target = new HashSet<String>();
-    if (src != null) {
-      for (final String s : src) {
-        target.add(s.toLowerCase(LOCALE));
+    final Map<String, CheckResult> licenses = new ConcurrentHashMap<String, CheckResult>();
+    final int poolSize = Math.max(1, Math.min(threads, artifacts.size()));
+    final ExecutorService executor = Executors.newFixedThreadPool(poolSize, newThreadFactory("os-check-worker-"));
+    try {
+      final List<Future<CheckResult>> futures = new ArrayList<Future<CheckResult>>();
+      for (final Artifact artifact : artifacts) {
+        futures.add(executor.submit(new Callable<CheckResult>()
+        {
+          @Override
+          public CheckResult call() throws Exception
+          {
+            return checkArtifact(artifact, exclusions, excludedScopesSet, policy);
+          }
+        }));
+      }
+      for (final Future<CheckResult> future : futures) {
+        final CheckResult result = future.get();
+        licenses.put(result.coordinates, result);
       }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while checking licenses", e);
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof MojoExecutionException) {
+        throw (MojoExecutionException) e.getCause();
+      }
+      throw new MojoExecutionException(e.getCause().getMessage(), e.getCause());
+    } finally {
+      executor.shutdownNow();
     }
-    return target;
+    return licenses;
   }
 
-  List<Pattern> getAsPatternList(final String[] src)
+  /**
+   * @return a factory for daemon threads called prefix + number
+   */
+  static ThreadFactory newThreadFactory(final String prefix)
   {
-    final List<Pattern> target = new ArrayList<Pattern>();
-    if (src != null) {
-      for (final String s : src) {
-        try {
-          final Pattern pattern = Pattern.compile(s);
-          target.add(pattern);
-        } catch (final PatternSyntaxException e) {
-          getLog().warn("The regex " + s + " is invalid: " + e.getLocalizedMessage());
-        }
+    return new ThreadFactory()
+    {
+      private final AtomicInteger count = new AtomicInteger();
 
+      @Override
+      public Thread newThread(final Runnable r)
+      {
+        final Thread thread = new Thread(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            try {
+              r.run();
+            } finally {
+              PomScanner.releaseBuffer();
+            }
+          }
+        }, prefix + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
       }
-    }
-    return target;
+    };
   }
 
-  String toCoordinates(Artifact artifact)
+  CheckResult checkArtifact(final Artifact artifact, final ExclusionMatcher exclusions,
+      final Set<String> excludedScopesSet, final LicensePolicy policy) throws MojoExecutionException
   {
-    return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getVersion();
+    final long start = profiler.start();
+    try {
+      return classifyArtifact(artifact, exclusions, excludedScopesSet, policy);
+    } finally {
+      profiler.stop(Phase.CHECK, start, toCoordinates(artifact));
+    }
   }
 
-  String recurseForLicenseName(final Artifact artifact, final int currentDepth) throws IOException
+  private CheckResult classifyArtifact(final Artifact artifact, final ExclusionMatcher exclusions,
+      final Set<String> excludedScopesSet, final LicensePolicy policy) throws MojoExecutionException
   {
+    if (artifactIsOnExcludeList(exclusions, excludedScopesSet, artifact)) {
+      return new CheckResult(artifact, CheckOutcome.ARTIFACT_EXCLUDED);
+    }
+    final String coordinates = toCoordinates(artifact);
+    final SessionCaches.Verdict verdict = findVerdict(artifact, coordinates);
+    final String licenseName = verdict.licenseName;
+    String licenseCode = verdict.licenseCode;
+
+    final long start = profiler.start();
+    final CheckOutcome outcome;
+    final LicensePolicy.Decision decision;
+    if (licenseCode == null) {
+      decision = LicensePolicy.Decision.NO_INFO;
+    } else {
+      decision = verdict.licenseCodeId >= 0 ? policy.decide(verdict.licenseCodeId) : policy.decide(licenseCode);
+    }
+    if (decision == LicensePolicy.Decision.NO_INFO) {
+      outcome = CheckOutcome.LICENSE_INVALID_NO_INFO;
+      if (! excludeNoLicense) {
+        getLog().warn("Build will fail because of artifact '" + toCoordinates(artifact) + "' and license'" + licenseName + "'.");
+      }
+    } else if (decision == LicensePolicy.Decision.DENIED) {
+      outcome = CheckOutcome.LICENSE_INVALID_BLACKLISTED;
+      licenseCode += " IS ON YOUR BLACKLIST";
+    } else if (decision == LicensePolicy.Decision.UNKNOWN) {
+      outcome = CheckOutcome.LICENSE_INVALID_NOT_RECOGNIZED;
+      licenseCode += " IS NOT ON YOUR WHITELIST";
+    } else {
+      outcome = CheckOutcome.LICENSE_VALID;
+    }
+    profiler.stop(Phase.CLASSIFY, start, coordinates);
+    return new CheckResult(artifact,licenseCode,outcome);
+  }
 
-    final File artifactDirectory = artifact.getFile().getParentFile();
-    String directoryPath = artifactDirectory.getAbsolutePath();
-    directoryPath += "/" + artifact.getArtifactId() + "-" + artifact.getVersion() + ".pom";
-
-    final String pom = readPomContents(directoryPath);
-
-    // first, look for a license
-    String licenseName = extractLicenseName(pom);
-    if (licenseName == null) {
-      final String parentArtifactCoords = extractParentCoords(pom);
-      if (parentArtifactCoords != null) {
-        // search for the artifact
-        final Artifact parent = retrieveArtifact(parentArtifactCoords);
-        if (parent != null) {
-          // check the recursion depth
-          if (currentDepth >= maxSearchDepth) {
-            return null; // TODO throw an exception
-          }
-          licenseName = recurseForLicenseName(parent, currentDepth + 1);
-        } else {
-          return null;
+  /**
+   * Finds the license of a dependency. Each dependency is only looked up once per build, concurrent lookups of the same
+   * dependency (from other modules of a parallel build) wait for the one in flight.
+   *
+   * @param artifact
+   * @param coordinates the artifact's groupId:artifactId:version
+   * @return the license name and code
+   * @throws MojoExecutionException if the artifact cannot be resolved
+   */
+  SessionCaches.Verdict findVerdict(final Artifact artifact, final String coordinates) throws MojoExecutionException
+  {
+    try {
+      return caches.verdicts.get(coordinates + "@" + maxSearchDepth, new Callable<SessionCaches.Verdict>()
+      {
+        @Override
+        public SessionCaches.Verdict call() throws MojoExecutionException
+        {
+          return loadVerdict(artifact, coordinates);
         }
-      } else {
-        return null;
+      });
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof MojoExecutionException) {
+        throw (MojoExecutionException) e.getCause();
       }
+      throw new MojoExecutionException(e.getCause().getMessage(), e.getCause());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while checking " + coordinates, e);
     }
-    return licenseName;
   }
 
-  String readPomContents(final String path) throws IOException
+  private SessionCaches.Verdict loadVerdict(final Artifact artifact, final String coordinates)
+      throws MojoExecutionException
   {
+    final LicenseCache.Entry cached = licenseCache == null ? null
+        : licenseCache.get(coordinates, getLocalPomFile(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion()));
 
-    final StringBuffer buffer = new StringBuffer();
-    BufferedReader reader = null;
-
-    reader = new BufferedReader(new FileReader(path));
-
-    String line = null;
-
-    while ((line = reader.readLine()) != null) {
-      buffer.append(line);
+    if (licenseCache != null) {
+      profiler.increment(cached != null ? Counter.LICENSE_CACHE_HIT : Counter.LICENSE_CACHE_MISS);
+    }
+    if (cached != null) {
+      return new SessionCaches.Verdict(cached.licenseName, cached.licenseCode);
     }
 
+    if (isKnownWithoutLicense(coordinates)) {
+      return new SessionCaches.Verdict(null, convertLicenseNameToCode(null));
+    }
 
-    reader.close();
-
-
-    return buffer.toString();
+    final Artifact resolved = resolveDependency(artifact);
+    String licenseName = "";
+    boolean readFailed = false;
+    try {
+      licenseName = recurseForLicenseName(resolved, 0);
+    } catch (IOException e) {
+      readFailed = true;
+      getLog().error("Error reading license information", e);
+    }
+    final String licenseCode = convertLicenseNameToCode(licenseName);
+    if (licenseCache != null && licenseName != null && !readFailed) {
+      licenseCache.put(coordinates, new File(getPomPath(resolved)), licenseName, licenseCode);
+    }
+    return new SessionCaches.Verdict(licenseName, licenseCode);
   }
 
   /**
-   * This function looks for the license textual description. I didn't really want to parse the pom xml since we're
-   * just looking for one little snippet of the content.
+   * Collects the full dependency graph of the project (without downloading any jars) and flattens it breadth first.
+   * Every artifact shows up once, no matter how many paths lead to it, and its dependency trail is the shortest path
+   * from the project.
    *
-   * @param raw
-   * @return
+   * @param project
+   * @return the direct and transitive dependencies, with scope and dependency trail set
+   * @throws MojoExecutionException if the graph cannot be collected
    */
-  // TODO make this more elegant and less brittle
-  String extractLicenseName(final String raw)
+  Collection<Artifact> collectTransitiveArtifacts(final MavenProject project) throws MojoExecutionException
   {
-    final String licenseTagStart = "<license>", licenseTagStop = "</license>";
-    final String nameTagStart = "<name>", nameTagStop = "</name>";
-    if (raw.indexOf(licenseTagStart) != -1) {
-      final String licenseContents = raw.substring(raw.indexOf(licenseTagStart) + licenseTagStart.length(), raw.indexOf(licenseTagStop));
-      final String name = licenseContents.substring(licenseContents.indexOf(nameTagStart) + nameTagStart.length(), licenseContents.indexOf(nameTagStop));
-      return name;
+    final ArtifactTypeRegistry stereotypes = repoSession.getArtifactTypeRegistry();
+    final CollectRequest request = new CollectRequest();
+    request.setRootArtifact(RepositoryUtils.toArtifact(project.getArtifact()));
+    for (final Dependency dependency : project.getDependencies()) {
+      request.addDependency(RepositoryUtils.toDependency(dependency, stereotypes));
     }
-    return null;
+    final DependencyManagement management = project.getDependencyManagement();
+    if (management != null) {
+      for (final Dependency dependency : management.getDependencies()) {
+        request.addManagedDependency(RepositoryUtils.toDependency(dependency, stereotypes));
+      }
+    }
+    request.setRepositories(project.getRemoteProjectRepositories());
+
+    final DependencyNode root;
+    try {
+      root = repoSystem.collectDependencies(repoSession, request).getRoot();
+    } catch (final DependencyCollectionException e) {
+      throw new MojoExecutionException("Cannot collect the dependencies of " + project.getId() + ": "
+          + e.getMessage(), e);
+    }
+    return flattenBreadthFirst(root, project.getId());
   }
 
   /**
-   * @param raw
-   * @return
+   * @param root the root of a dependency graph
+   * @param rootId how to call the root in dependency trails
+   * @return each artifact in the graph once, in breadth first order, with scope and dependency trail set
    */
-  // TODO obviously this code needs a lot of error protection and handling
-  String extractParentCoords(final String raw)
+  static List<Artifact> flattenBreadthFirst(final DependencyNode root, final String rootId)
   {
-    final String parentTagStart = "<parent>", parentTagStop = "</parent>";
-    final String groupTagStart = "<groupId>", groupTagStop = "</groupId>";
-    final String artifactTagStart = "<artifactId>", artifactTagStop = "</artifactId>";
-    final String versionTagStart = "<version>", versionTagStop = "</version>";
-
-    if (raw.indexOf(parentTagStart) == -1) {
-      return null;
+    final List<Artifact> artifacts = new ArrayList<Artifact>();
+    final Set<String> seen = new HashSet<String>();
+    final Deque<DependencyNode> nodes = new ArrayDeque<DependencyNode>();
+    final Deque<List<String>> trails = new ArrayDeque<List<String>>();
+    nodes.add(root);
+    trails.add(Collections.singletonList(rootId));
+    while (!nodes.isEmpty()) {
+      final DependencyNode node = nodes.remove();
+      final List<String> trail = trails.remove();
+      for (final DependencyNode child : node.getChildren()) {
+        final org.eclipse.aether.graph.Dependency dependency = child.getDependency();
+        if (dependency == null || !seen.add(toCoordinates(dependency.getArtifact()))) {
+          continue;
+        }
+        final Artifact artifact = RepositoryUtils.toArtifact(dependency.getArtifact());
+        artifact.setScope(dependency.getScope());
+        artifact.setOptional(dependency.isOptional());
+        final List<String> childTrail = new ArrayList<String>(trail);
+        childTrail.add(artifact.getId());
+        artifact.setDependencyTrail(childTrail);
+        artifacts.add(artifact);
+        nodes.add(child);
+        trails.add(childTrail);
+      }
     }
-    final String contents = raw.substring(raw.indexOf(parentTagStart) + parentTagStart.length(), raw.indexOf(parentTagStop));
-    final String group = contents.substring(contents.indexOf(groupTagStart) + groupTagStart.length(), contents.indexOf(groupTagStop));
-    final String artifact = contents.substring(contents.indexOf(artifactTagStart) + artifactTagStart.length(), contents.indexOf(artifactTagStop));
-    final String version = contents.substring(contents.indexOf(versionTagStart) + versionTagStart.length(), contents.indexOf(versionTagStop));
-    return group + ":" + artifact + ":" + version;
+    return artifacts;
+  }
+
+  static String toCoordinates(final org.eclipse.aether.artifact.Artifact artifact)
+  {
+    return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getVersion();
+  }
+
+  static String describeTrail(final Artifact artifact)
+  {
+    final List<String> trail = artifact.getDependencyTrail();
+    if (trail == null || trail.isEmpty()) {
+      return toCoordinates(artifact);
+    }
+    final StringBuilder builder = new StringBuilder();
+    for (final String element : trail) {
+      if (builder.length() > 0) {
+        builder.append(" -> ");
+      }
+      builder.append(element);
+    }
+    return builder.toString();
   }
 
   /**
-   * Uses Aether to retrieve an artifact from the repository.
+   * Makes sure a dependency's pom (or the whole artifact, see {@link #resolvePomOnly}) is available locally. If Maven
+   * already resolved the dependency, its pom is usually sitting in the local repository and is used right away;
+   * Aether is only asked when it isn't.
    *
-   * @param coordinates as in groupId:artifactId:version
-   * @return the located artifact
+   * @param artifact a dependency of the project
+   * @return the artifact with its file set
+   * @throws MojoExecutionException if the artifact cannot be resolved
    */
-  Artifact retrieveArtifact(final String coordinates)
+  Artifact resolveDependency(final Artifact artifact) throws MojoExecutionException
   {
+    final long start = profiler.start();
+    try {
+      return resolveDependencyPom(artifact);
+    } finally {
+      profiler.stop(Phase.RESOLVE, start, toCoordinates(artifact));
+    }
+  }
 
-    final ArtifactRequest request = new ArtifactRequest();
-    request.setArtifact(new DefaultArtifact(coordinates));
-    request.setRepositories(remoteRepos);
+  private Artifact resolveDependencyPom(final Artifact artifact) throws MojoExecutionException
+  {
+    final Artifact local = findLocalDependencyPom(artifact);
+    if (local != null) {
+      return local;
+    }
+    final Artifact prefetched = prefetchedDependencies.get(toCoordinates(artifact));
+    if (prefetched != null) {
+      return prefetched;
+    }
+
+    final String coordinates = toCoordinates(artifact);
+    if (isKnownUnresolvable(coordinates)) {
+      throw new MojoExecutionException("Could not resolve " + coordinates + " in an earlier attempt (set "
+          + "-Dos-check.failureCacheHours=0 to retry it right away)");
+    }
 
+    final ArtifactRequest request = newDependencyRequest(artifact);
     ArtifactResult result = null;
     try {
       result = repoSystem.resolveArtifact(repoSession, request);
-    } catch (final ArtifactResolutionException e) {
-      getLog().error("Could not resolve parent artifact (" + coordinates + "): " + e.getMessage());
+      getLog().info(result.toString());
+    }
+    catch (final ArtifactResolutionException e)
+    {
+        if (negativeCache != null) {
+          negativeCache.put(coordinates, NegativeCache.Reason.UNRESOLVABLE);
+        }
+        throw new MojoExecutionException( e.getMessage(), e );
     }
+    return RepositoryUtils.toArtifact(result.getArtifact());
+  }
 
-    if (result != null) {
-      return RepositoryUtils.toArtifact(result.getArtifact());
+  /**
+   * @return the dependency's pom if it can be taken from the local repository without asking Aether, otherwise null
+   */
+  private Artifact findLocalDependencyPom(final Artifact artifact)
+  {
+    // when collecting the transitive graph, Aether has already fetched the poms
+    if (artifact.getFile() != null || transitive) {
+      return findLocalPom(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion());
     }
     return null;
   }
 
   /**
-   * This is the method that looks at the textual description of the license and returns a code version by running
-   * regex. It needs a lot of optimization.
+   * @return the request to resolve a dependency with, see {@link #resolvePomOnly}
+   */
+  private ArtifactRequest newDependencyRequest(final Artifact artifact)
+  {
+    final ArtifactRequest request = new ArtifactRequest();
+    if (resolvePomOnly) {
+      request.setArtifact(toPomArtifact(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion()));
+    } else {
+      request.setArtifact(RepositoryUtils.toArtifact(artifact));
+    }
+    request.setRepositories(remoteRepos);
+    return request;
+  }
+
+  /**
+   * Resolves, ahead of the checks, what the checks are going to need: first the dependencies, all in one batch, then
+   * their parents, each level of the parent hierarchies in one batch. Aether can then run the transfers of a batch in
+   * parallel and over the same connections, instead of one request at a time from the worker threads.
    *
-   * @param licenseName
-   * @return
+   * Failures are ignored here, the checks resolve whatever is missing one by one and report the errors.
+   *
+   * @param artifacts the artifacts about to be checked
    */
-  String convertLicenseNameToCode(final String licenseName)
+  void prefetch(final Collection<Artifact> artifacts, final ExclusionMatcher exclusions,
+      final Set<String> excludedScopesSet)
   {
-    if (licenseName == null) {
-      return null;
+    final long start = profiler.start();
+    int batches = 0;
+
+    // the dependencies
+    final List<String> poms = new ArrayList<String>();
+    final List<ArtifactRequest> requests = new ArrayList<ArtifactRequest>();
+    for (final Artifact artifact : artifacts) {
+      if (artifactIsOnExcludeList(exclusions, excludedScopesSet, artifact)) {
+        continue;
+      }
+      final String coordinates = toCoordinates(artifact);
+      if (licenseCache != null && licenseCache.get(coordinates,
+          getLocalPomFile(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion())) != null) {
+        continue;
+      }
+      if (negativeCache != null && negativeCache.get(coordinates) != null) {
+        continue;
+      }
+      final Artifact local = findLocalDependencyPom(artifact);
+      if (local != null) {
+        poms.add(getPomPath(local));
+      } else {
+        requests.add(newDependencyRequest(artifact));
+      }
     }
-    if (descriptors == null) {
-      loadDescriptors();
+    if (!requests.isEmpty()) {
+      batches++;
+      for (final Map.Entry<String, Artifact> resolved : resolveBatch(requests).entrySet()) {
+        prefetchedDependencies.put(resolved.getKey(), resolved.getValue());
+        poms.add(getPomPath(resolved.getValue()));
+      }
+    }
+
+    // the parents, level by level
+    final Set<String> seen = new HashSet<String>();
+    for (int level = 1; level <= maxSearchDepth && !poms.isEmpty(); level++) {
+      final List<String> parents = new ArrayList<String>();
+      for (final String path : poms) {
+        final PomInfo pom;
+        try {
+          pom = readPom(path);
+        } catch (final IOException e) {
+          continue;
+        }
+        final String parent = pom.getParentCoordinates();
+        if (pom.getLicenseName() == null && parent != null && !caches.parentLicenses.containsKey(parent)
+            && (negativeCache == null || negativeCache.get(parent) == null) && seen.add(parent)) {
+          parents.add(parent);
+        }
+      }
+
+      poms.clear();
+      requests.clear();
+      for (final String parent : parents) {
+        final String[] parts = parent.split(":");
+        final Artifact local = findLocalPom(parts[0], parts[1], parts[2]);
+        if (local != null) {
+          poms.add(getPomPath(local));
+        } else {
+          final ArtifactRequest request = new ArtifactRequest();
+          request.setArtifact(toPomArtifact(parts[0], parts[1], parts[2]));
+          request.setRepositories(remoteRepos);
+          requests.add(request);
+        }
+      }
+      if (!requests.isEmpty()) {
+        batches++;
+        for (final Map.Entry<String, Artifact> resolved : resolveBatch(requests).entrySet()) {
+          caches.parents.putIfAbsent(resolved.getKey(), resolved.getValue());
+          poms.add(getPomPath(resolved.getValue()));
+        }
+      }
+    }
+    profiler.stop(Phase.PREFETCH, start, batches + " batch(es)");
+  }
+
+  /**
+   * @param requests
+   * @return the artifacts that could be resolved, by coordinates
+   */
+  private Map<String, Artifact> resolveBatch(final List<ArtifactRequest> requests)
+  {
+    List<ArtifactResult> results;
+    try {
+      results = repoSystem.resolveArtifacts(repoSession, requests);
+    } catch (final ArtifactResolutionException e) {
+      results = e.getResults();
     }
-    for (final LicenseDescriptor descriptor : descriptors) {
-      // TODO there's gotta be a faster way to do this
-      final Pattern pattern = Pattern.compile(descriptor.getRegex(), Pattern.CASE_INSENSITIVE);
-      final Matcher matcher = pattern.matcher(licenseName);
-      if (matcher.find()) {
-        return descriptor.getCode();
+    final Map<String, Artifact> resolved = new HashMap<String, Artifact>();
+    if (results != null) {
+      for (final ArtifactResult result : results) {
+        if (result.isResolved()) {
+          getLog().info(result.toString());
+          resolved.put(toCoordinates(result.getRequest().getArtifact()), RepositoryUtils.toArtifact(result.getArtifact()));
+        }
       }
     }
+    return resolved;
+  }
+
+  /**
+   * Looks up a pom in the session's local repository, bypassing Aether's resolution (and its remote round-trips).
+   *
+   * @param groupId
+   * @param artifactId
+   * @param version
+   * @return the pom artifact with its file set, or null if the pom isn't in the local repository
+   */
+  Artifact findLocalPom(final String groupId, final String artifactId, final String version)
+  {
+    final File pom = getLocalPomFile(groupId, artifactId, version);
+    if (pom == null || !pom.isFile()) {
+      profiler.increment(Counter.LOCAL_POM_MISS);
+      return null;
+    }
+    profiler.increment(Counter.LOCAL_POM_HIT);
+    return RepositoryUtils.toArtifact(toPomArtifact(groupId, artifactId, version).setFile(pom));
+  }
+
+  /**
+   * @param groupId
+   * @param artifactId
+   * @param version
+   * @return where the pom would be in the local repository (whether it's there or not), or null if there's no local
+   *         repository
+   */
+  File getLocalPomFile(final String groupId, final String artifactId, final String version)
+  {
+    final LocalRepositoryManager manager = repoSession == null ? null : repoSession.getLocalRepositoryManager();
+    if (manager == null) {
+      return null;
+    }
+    final String path = manager.getPathForLocalArtifact(toPomArtifact(groupId, artifactId, version));
+    return new File(manager.getRepository().getBasedir(), path);
+  }
+
+  /**
+   * Opens the cross-build license cache, see {@link #useCache}.
+   *
+   * @return the cache or null if caching is disabled or there's nowhere to put the cache
+   */
+  LicenseCache openLicenseCache()
+  {
+    final File directory = getCacheDirectory();
+    if (directory == null) {
+      return null;
+    }
+    // the modules of a build share the cache, it's only loaded once
+    try {
+      return caches.licenseCaches.get(new File(directory, "licenses.json"), new Callable<LicenseCache>()
+      {
+        @Override
+        public LicenseCache call()
+        {
+          return loadLicenseCache(new File(directory, "licenses.json"));
+        }
+      });
+    } catch (final ExecutionException e) {
+      getLog().warn("Ignoring the license cache: " + e.getCause().getMessage());
+      return null;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  /**
+   * @return the policy for the configured blacklist and whitelist, shared by the modules of the build that configure
+   *         the same lists
+   */
+  LicensePolicy getPolicy() throws MojoExecutionException
+  {
+    final List<String> blacklistCodes = blacklist == null ? Collections.<String> emptyList() : Arrays.asList(blacklist);
+    final List<String> whitelistCodes = whitelist == null ? Collections.<String> emptyList() : Arrays.asList(whitelist);
+    try {
+      return caches.policies.get(Arrays.asList(blacklistCodes, whitelistCodes), new Callable<LicensePolicy>()
+      {
+        @Override
+        public LicensePolicy call()
+        {
+          return new LicensePolicy(LicenseMatcher.getDefault(), blacklistCodes, whitelistCodes);
+        }
+      });
+    } catch (final ExecutionException e) {
+      throw new MojoExecutionException(e.getCause().getMessage(), e.getCause());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while compiling the blacklist and whitelist", e);
+    }
+  }
+
+  /**
+   * @return the directory of the cross-build caches, null if caching is disabled or there's nowhere to put them
+   */
+  private File getCacheDirectory()
+  {
+    if (!useCache) {
+      return null;
+    }
+    if (cacheDirectory != null) {
+      return cacheDirectory;
+    }
+    if (repoSession != null && repoSession.getLocalRepository() != null) {
+      return new File(repoSession.getLocalRepository().getBasedir(), ".license-check");
+    }
     return null;
   }
 
   /**
-   * This method looks for a resource file bundled with the plugin that contains a tab delimited version of the regex
-   * and the codes. Future versions of the plugin may retrieve fresh versions of the file from the server so we can
-   * take advantage of improvements in what we know and what we learn.
+   * Opens the cache of failed resolutions and license-less chains, see {@link #failureCacheHours}.
+   *
+   * @return the persistent cache, or the session's in-memory one if failures aren't to be remembered between builds
    */
-  // TODO I know, I know... this is really raw... will make it prettier
-  void loadDescriptors()
+  NegativeCache openNegativeCache()
   {
+    final File directory = getCacheDirectory();
+    if (directory == null || failureCacheHours <= 0) {
+      return caches.failures;
+    }
+    final File file = new File(directory, "failures.json");
+    try {
+      return caches.negativeCaches.get(file, new Callable<NegativeCache>()
+      {
+        @Override
+        public NegativeCache call()
+        {
+          final NegativeCache cache = new NegativeCache(file, TimeUnit.HOURS.toMillis(failureCacheHours));
+          try {
+            cache.load();
+          } catch (final IOException e) {
+            getLog().warn("Ignoring the failure cache: " + e.getMessage());
+          }
+          return cache;
+        }
+      });
+    } catch (final ExecutionException e) {
+      getLog().warn("Ignoring the failure cache: " + e.getCause().getMessage());
+      return caches.failures;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return caches.failures;
+    }
+  }
 
-    final String licensesPath = "/licenses.txt";
-    final InputStream is = getClass().getResourceAsStream(licensesPath);
-    BufferedReader reader = null;
-    descriptors = new ArrayList<LicenseDescriptor>();
-    final StringBuffer buffer = new StringBuffer();
+  private LicenseCache loadLicenseCache(final File file)
+  {
+    final LicenseCache cache = new LicenseCache(file, LicenseMatcher.getDefault().getFingerprint());
     try {
-      reader = new BufferedReader(new InputStreamReader(is));
-      String line = null;
-      while ((line = reader.readLine()) != null) {
-        buffer.append(line + "\n");
+      cache.load();
+    } catch (final IOException e) {
+      getLog().warn("Ignoring the license cache: " + e.getMessage());
+    }
+    return cache;
+  }
+
+  /**
+   * Prints the profile of this run and writes it (and the trace) to the build directory, see {@link #profile} and
+   * {@link #trace}.
+   */
+  void reportProfile()
+  {
+    if (profiler.isTracing() && outputDirectory != null) {
+      final File file = new File(outputDirectory, "license-check-trace.json");
+      try {
+        profiler.writeTrace(file);
+        getLog().info("Trace written to " + file);
+      } catch (final IOException e) {
+        getLog().warn("Could not write the trace " + file + ": " + e.getMessage());
       }
-    } catch (final Exception e) {
-      getLog().error(e);
-    } finally {
+    }
+    if (!profiler.isEnabled()) {
+      return;
+    }
+    getLog().info("--[ Profile ]------ ");
+    for (final String line : profiler.formatSummary()) {
+      getLog().info(line);
+    }
+    if (outputDirectory != null) {
+      final File file = new File(outputDirectory, "license-check-profile.json");
+      try {
+        profiler.writeJson(file);
+        getLog().info("Profile written to " + file);
+      } catch (final IOException e) {
+        getLog().warn("Could not write the profile " + file + ": " + e.getMessage());
+      }
+    }
+  }
+
+  void saveLicenseCache()
+  {
+    if (licenseCache != null) {
+      try {
+        licenseCache.save();
+      } catch (final IOException e) {
+        getLog().warn("Could not write the license cache " + licenseCache.getFile() + ": " + e.getMessage());
+      }
+    }
+  }
+
+
+  void saveNegativeCache()
+  {
+    if (negativeCache != null) {
       try {
-        reader.close();
+        negativeCache.save();
       } catch (final IOException e) {
-        // TODO
-        e.printStackTrace();
+        getLog().warn("Could not write the failure cache " + negativeCache.getFile() + ": " + e.getMessage());
+      }
+    }
+  }
+
+  boolean failsBuild(final CheckResult result)
+  {
+    switch (result.outcome) {
+      case LICENSE_INVALID_NO_INFO:
+        return !excludeNoLicense;
+      case LICENSE_INVALID_BLACKLISTED:
+      case LICENSE_INVALID_NOT_RECOGNIZED:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static String rightPad(String input,int len)
+  {
+    while ( input.length() < len ) {
+      input += " ";
+    }
+    return input;
+  }
+
+  private static String leftPad(String input,int len)
+  {
+    while ( input.length() < len ) {
+      input = " "+input;
+    }
+    return input;
+  }
+
+  Set<String> getAsLowerCaseSet(final String[] src)
+  {
+    final Set<String> target = new HashSet<String>();
+    if (src != null) {
+      for (final String s : src) {
+        target.add(s.toLowerCase(LOCALE));
+      }
+    }
+    return target;
+  }
+
+  List<Pattern> getAsPatternList(final String[] src)
+  {
+    final List<Pattern> target = new ArrayList<Pattern>();
+    if (src != null) {
+      for (final String s : src) {
+        try {
+          final Pattern pattern = Pattern.compile(s);
+          target.add(pattern);
+        } catch (final PatternSyntaxException e) {
+          getLog().warn("The regex " + s + " is invalid: " + e.getLocalizedMessage());
+        }
+
       }
     }
+    return target;
+  }
 
-    final String lines[] = buffer.toString().split("\n");
-    for (final String line : lines) {
-      final String columns[] = line.split("\\t");
-      final LicenseDescriptor descriptor = new LicenseDescriptor();
-      descriptor.setCode(columns[0]);
-      descriptor.setLicenseName(columns[2]);
-      descriptor.setRegex(columns[3]);
-      descriptors.add(descriptor);
+  /**
+   * Compiles {@link #excludes}, {@link #excludesGlob} and {@link #excludesRegex} into one matcher. Invalid globs and
+   * regexes are skipped with a warning.
+   */
+  ExclusionMatcher getExclusions()
+  {
+    final List<String> globs = new ArrayList<String>();
+    if (excludesGlob != null) {
+      for (final String glob : excludesGlob) {
+        if (glob.split(":", -1).length > 3) {
+          getLog().warn("The glob " + glob + " is invalid: expected groupId:artifactId:version");
+        } else {
+          globs.add(glob);
+        }
+      }
     }
+    return new ExclusionMatcher(getAsLowerCaseSet(excludes), globs, getAsPatternList(excludesRegex));
+  }
+
+  static String toCoordinates(Artifact artifact)
+  {
+    return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getVersion();
   }
 
   /**
-   * Checks to see if an artifact is on the user's exclude list
+   * Walks up the parent chain until a pom declares a license. Parents are looked up in
+   * {@link SessionCaches#parentLicenses} first; once a chain has been walked, every parent on it is remembered with the
+   * license the chain resolved to, so that siblings sharing (part of) the chain stop right there.
    *
-   * @param excludeSet
-   * @param patternList
-   * @param excludedScopes
-   * @param artifact
+   * @param artifact the resolved artifact to start with
+   * @param currentDepth the number of parents already walked
+   * @return the license name or null if none could be found
+   * @throws IOException
+   */
+  String recurseForLicenseName(final Artifact artifact, final int currentDepth) throws IOException
+  {
+    final long start = profiler.start();
+    try {
+      return searchLicenseName(artifact, currentDepth);
+    } finally {
+      profiler.stop(Phase.PARENT_SEARCH, start, toCoordinates(artifact));
+    }
+  }
+
+  private String searchLicenseName(final Artifact artifact, final int currentDepth) throws IOException
+  {
+    final List<String> visitedParents = new ArrayList<String>();
+    Artifact current = artifact;
+    int depth = currentDepth;
+    String licenseName = null;
+    boolean complete = true;
+    while (true) {
+      final PomInfo pom = readPom(getPomPath(current));
+
+      // first, look for a license
+      licenseName = pom.getLicenseName();
+      if (licenseName != null) {
+        break;
+      }
+      final String parentArtifactCoords = pom.getParentCoordinates();
+      if (parentArtifactCoords == null) {
+        break;
+      }
+      final CachedLicense cached = caches.parentLicenses.get(parentArtifactCoords);
+      if (cached != null) {
+        profiler.increment(Counter.PARENT_LICENSE_HIT);
+        licenseName = cached.licenseName;
+        break;
+      }
+      profiler.increment(Counter.PARENT_LICENSE_MISS);
+      if (isKnownWithoutLicense(parentArtifactCoords)) {
+        break;
+      }
+      // check the recursion depth
+      if (depth >= maxSearchDepth) {
+        complete = false; // TODO throw an exception
+        break;
+      }
+      // search for the artifact
+      final Artifact parent = retrieveArtifact(parentArtifactCoords);
+      if (parent == null) {
+        complete = false;
+        break;
+      }
+      visitedParents.add(parentArtifactCoords);
+      current = parent;
+      depth++;
+    }
+
+    // don't remember chains that were cut short, another child might get further
+    if (complete) {
+      final CachedLicense resolved = new CachedLicense(licenseName);
+      for (final String coordinates : visitedParents) {
+        caches.parentLicenses.putIfAbsent(coordinates, resolved);
+      }
+      if (licenseName == null && negativeCache != null) {
+        negativeCache.put(toCoordinates(artifact), NegativeCache.Reason.NO_LICENSE);
+        for (final String coordinates : visitedParents) {
+          negativeCache.put(coordinates, NegativeCache.Reason.NO_LICENSE);
+        }
+      }
+    }
+    return licenseName;
+  }
+
+  /**
+   * Returns the path of the pom that belongs to a resolved artifact. If the artifact was resolved as a pom, that's
+   * the file itself, otherwise the pom is expected next to the resolved file in the local repository.
+   *
+   * @param artifact a resolved artifact
+   * @return the path of the artifact's pom
+   */
+  String getPomPath(final Artifact artifact)
+  {
+    final File file = artifact.getFile();
+    if (file.getName().endsWith(".pom")) {
+      return file.getAbsolutePath();
+    }
+    return file.getParentFile().getAbsolutePath() + "/" + artifact.getArtifactId() + "-" + artifact.getVersion() + ".pom";
+  }
+
+  /**
+   * @param groupId
+   * @param artifactId
+   * @param version
+   * @return an Aether artifact that refers to the pom (and nothing but the pom) of the given coordinates
+   */
+  static org.eclipse.aether.artifact.Artifact toPomArtifact(final String groupId, final String artifactId,
+      final String version)
+  {
+    return new DefaultArtifact(groupId, artifactId, "pom", version);
+  }
+
+  /**
+   * Reads the license name and the parent coordinates from a pom, see {@link PomScanner}. Each pom is only read once
+   * per build.
+   *
+   * @param path
    * @return
+   * @throws IOException if the pom cannot be read or parsed
    */
-  boolean artifactIsOnExcludeList(final Set<String> excludeSet, final List<Pattern> patternList,
-      final Set<String> excludedScopes, final Artifact artifact)
+  PomInfo readPom(final String path) throws IOException
   {
-    return isExcludedTemplate(excludeSet, patternList, toCoordinates(artifact)) || excludedScopes.contains(artifact.getScope());
+    try {
+      return caches.poms.get(path, new Callable<PomInfo>()
+      {
+        @Override
+        public PomInfo call() throws IOException
+        {
+          final long start = profiler.start();
+          try {
+            return PomScanner.scan(new File(path), parentResolver == null ? null : new PomScanner.ParentListener()
+            {
+              @Override
+              public void parentFound(final String coordinates)
+              {
+                speculate(coordinates);
+              }
+            });
+          } finally {
+            profiler.stop(Phase.READ_POM, start, profiler.isTracing() ? new File(path).getName() : null);
+          }
+        }
+      });
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause().getMessage(), e.getCause());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading " + path, e);
+    }
   }
 
-  boolean isExcludedTemplate(final Set<String> excludeSet, final List<Pattern> patternList,
-      final String template)
+  /**
+   * Starts resolving and reading a parent in the background, see {@link #speculativeParents}. Reading it starts on
+   * the grandparent, and so on. If a check gets to the parent in the meantime, it waits for the resolution in flight
+   * instead of starting another one.
+   *
+   * @param coordinates the parent's groupId:artifactId:version
+   */
+  void speculate(final String coordinates)
   {
-    if (isContained(excludeSet, template)) {
+    final ExecutorService resolver = parentResolver;
+    if (resolver == null || caches.parentLicenses.containsKey(coordinates) || !speculatedParents.add(coordinates)) {
+      return;
+    }
+    try {
+      resolver.execute(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          final Artifact parent = retrieveArtifact(coordinates);
+          if (parent != null) {
+            try {
+              readPom(getPomPath(parent));
+            } catch (final IOException e) {
+              // the check that needs the parent will report it
+            }
+          }
+        }
+      });
+    } catch (final RejectedExecutionException e) {
+      // the checks are done
+    }
+  }
+
+  /**
+   * Uses Aether to retrieve the pom of a (parent) artifact from the repository, unless it's already in the local
+   * repository. Parents always have pom packaging, so there's no point in asking for anything else.
+   *
+   * Each parent is only retrieved once per build.
+   *
+   * @param coordinates as in groupId:artifactId:version
+   * @return the located artifact, null if it cannot be resolved
+   */
+  Artifact retrieveArtifact(final String coordinates)
+  {
+    while (true) {
+      try {
+        return caches.parents.get(coordinates, new Callable<Artifact>()
+        {
+          @Override
+          public Artifact call() throws InterruptedException
+          {
+            final long start = profiler.start();
+            try {
+              return retrieveParentPom(coordinates);
+            } finally {
+              profiler.stop(Phase.RESOLVE, start, coordinates);
+            }
+          }
+        });
+      } catch (final ExecutionException e) {
+        if (!(e.getCause() instanceof InterruptedException)) {
+          getLog().error("Could not resolve parent artifact (" + coordinates + "): " + e.getCause().getMessage());
+          return null;
+        }
+        if (Thread.currentThread().isInterrupted()) {
+          return null;
+        }
+        // the thread this one waited for was interrupted, the parent is still unknown
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+  }
+
+  /**
+   * @return the parent pom, null if it cannot be resolved
+   * @throws InterruptedException if the resolution was cut short by an interrupt, which says nothing about the parent:
+   *           it's neither cached nor remembered as a failure. The interrupt flag stays set.
+   */
+  private Artifact retrieveParentPom(final String coordinates) throws InterruptedException
+  {
+    final String[] parts = coordinates.split(":");
+    final Artifact local = findLocalPom(parts[0], parts[1], parts[2]);
+    if (local != null) {
+      return local;
+    }
+
+    if (isKnownUnresolvable(coordinates)) {
+      getLog().debug("Not resolving parent artifact (" + coordinates + "), it failed in an earlier attempt");
+      return null;
+    }
+
+    final ArtifactRequest request = new ArtifactRequest();
+    request.setArtifact(toPomArtifact(parts[0], parts[1], parts[2]));
+    request.setRepositories(remoteRepos);
+
+    ArtifactResult result = null;
+    try {
+      result = repoSystem.resolveArtifact(repoSession, request);
+    } catch (final ArtifactResolutionException e) {
+      if (isInterruption(e)) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedException("Interrupted while resolving " + coordinates);
+      }
+      getLog().error("Could not resolve parent artifact (" + coordinates + "): " + e.getMessage());
+      if (negativeCache != null) {
+        negativeCache.put(coordinates, NegativeCache.Reason.UNRESOLVABLE);
+      }
+    }
+
+    if (result != null) {
+      return RepositoryUtils.toArtifact(result.getArtifact());
+    }
+    return null;
+  }
+
+  /**
+   * @return true if the resolution failed because the thread was interrupted, not because of the artifact
+   */
+  static boolean isInterruption(final Exception e)
+  {
+    if (Thread.currentThread().isInterrupted()) {
       return true;
     }
-    for (final Pattern pattern : patternList) {
-      if (pattern.matcher(template).matches()) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof InterruptedException || cause instanceof InterruptedIOException
+          || cause instanceof ClosedByInterruptException) {
         return true;
       }
     }
+    if (e instanceof ArtifactResolutionException) {
+      for (final ArtifactResult result : ((ArtifactResolutionException) e).getResults()) {
+        for (final Exception exception : result.getExceptions()) {
+          if (exception != e && isInterruption(exception)) {
+            return true;
+          }
+        }
+      }
+    }
     return false;
   }
 
-  boolean isContained(final Set<String> set, final String template)
+  /**
+   * @param coordinates groupId:artifactId:version
+   * @return true if resolving the coordinates failed before, see {@link #failureCacheHours}
+   */
+  private boolean isKnownUnresolvable(final String coordinates)
   {
-    if (set != null && template != null) {
-      return set.contains(template.toLowerCase(LOCALE));
+    return isKnownFailure(coordinates, NegativeCache.Reason.UNRESOLVABLE);
+  }
+
+  /**
+   * @param coordinates groupId:artifactId:version
+   * @return true if neither the pom nor its parents were found to declare a license before
+   */
+  private boolean isKnownWithoutLicense(final String coordinates)
+  {
+    return isKnownFailure(coordinates, NegativeCache.Reason.NO_LICENSE);
+  }
+
+  private boolean isKnownFailure(final String coordinates, final NegativeCache.Reason reason)
+  {
+    if (negativeCache == null) {
+      return false;
     }
-    return false;
+    final boolean known = negativeCache.get(coordinates) == reason;
+    profiler.increment(known ? Counter.NEGATIVE_CACHE_HIT : Counter.NEGATIVE_CACHE_MISS);
+    return known;
+  }
+
+  /**
+   * This is the method that looks at the textual description of the license and returns a code version, see
+   * {@link LicenseMatcher}. Names that were seen before are answered by {@link LicenseCodeMemo}.
+   *
+   * @param licenseName
+   * @return
+   */
+  String convertLicenseNameToCode(final String licenseName)
+  {
+    final long start = profiler.start();
+    try {
+      return LicenseCodeMemo.getDefault().findCode(licenseName);
+    } finally {
+      profiler.stop(Phase.LICENSE_MATCH, start, licenseName);
+    }
+  }
+
+  /**
+   * Checks to see if an artifact is on the user's exclude list
+   *
+   * @param exclusions
+   * @param excludedScopes
+   * @param artifact
+   * @return
+   */
+  boolean artifactIsOnExcludeList(final ExclusionMatcher exclusions, final Set<String> excludedScopes,
+      final Artifact artifact)
+  {
+    return exclusions.matches(toCoordinates(artifact)) || excludedScopes.contains(artifact.getScope());
   }
 
 }
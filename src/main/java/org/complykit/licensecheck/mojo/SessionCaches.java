@@ -0,0 +1,116 @@
+package org.complykit.licensecheck.mojo;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.maven.artifact.Artifact;
+import org.complykit.licensecheck.cache.LicenseCache;
+import org.complykit.licensecheck.cache.NegativeCache;
+import org.complykit.licensecheck.cache.SingleFlightCache;
+import org.complykit.licensecheck.license.LicenseMatcher;
+import org.complykit.licensecheck.license.LicensePolicy;
+import org.complykit.licensecheck.model.PomInfo;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+
+/**
+ * What the license checks of one build (one repository session) share, so that the modules of a parallel build
+ * (mvn -T) don't resolve and read the same poms over and over. The license table itself is shared by the whole JVM,
+ * see {@link LicenseMatcher}.
+ *
+ * Everything in here is safe to use from several threads; concurrent requests for the same pom or artifact wait for
+ * the one in flight. The caches are kept in the data of the session, so they go away with it; nothing static holds
+ * on to them in JVMs that outlive a build (mvnd, IDEs).
+ */
+final class SessionCaches
+{
+  /**
+   * The license name and code an artifact resolved to, and the id of the code (see
+   * {@link LicenseMatcher#getCodeId(String)}).
+   */
+  static final class Verdict
+  {
+    final String licenseName;
+    final String licenseCode;
+    final int licenseCodeId;
+
+    Verdict(String licenseName, String licenseCode)
+    {
+      this.licenseName = licenseName;
+      this.licenseCode = licenseCode;
+      this.licenseCodeId = LicenseMatcher.getDefault().getCodeId(licenseCode);
+    }
+  }
+
+  /*
+   * the key in the session data; a string, so the session doesn't refer to the plugin's classes through its keys
+   */
+  private static final String KEY = SessionCaches.class.getName();
+
+  /**
+   * Parsed poms, by path.
+   */
+  final SingleFlightCache<String, PomInfo> poms = new SingleFlightCache<String, PomInfo>();
+
+  /**
+   * Resolved parent poms by coordinates, null if the parent cannot be resolved.
+   */
+  final SingleFlightCache<String, Artifact> parents = new SingleFlightCache<String, Artifact>();
+
+  /**
+   * The licenses of dependencies, by coordinates and recursion limit.
+   */
+  final SingleFlightCache<String, Verdict> verdicts = new SingleFlightCache<String, Verdict>();
+
+  /**
+   * The licenses of the parent poms seen so far, keyed by parent coordinates.
+   */
+  final ConcurrentMap<String, OpenSourceLicenseCheckMojo.CachedLicense> parentLicenses =
+      new ConcurrentHashMap<String, OpenSourceLicenseCheckMojo.CachedLicense>();
+
+  /**
+   * The compiled blacklists and whitelists, by the configured lists.
+   */
+  final SingleFlightCache<List<List<String>>, LicensePolicy> policies =
+      new SingleFlightCache<List<List<String>>, LicensePolicy>();
+
+  /**
+   * The cross-build license caches, by file. Loaded once and saved by every module.
+   */
+  final SingleFlightCache<File, LicenseCache> licenseCaches = new SingleFlightCache<File, LicenseCache>();
+
+  /**
+   * The coordinates that failed to resolve or declare no license in this build, unless they are remembered between
+   * builds in one of {@link #negativeCaches}.
+   */
+  final NegativeCache failures = new NegativeCache();
+
+  /**
+   * The cross-build caches of failures, by file.
+   */
+  final SingleFlightCache<File, NegativeCache> negativeCaches = new SingleFlightCache<File, NegativeCache>();
+
+  /**
+   * @param session may be null, then the caches aren't shared with anyone
+   * @return the caches of the session
+   */
+  static SessionCaches forSession(final RepositorySystemSession session)
+  {
+    final SessionData data = session == null ? null : session.getData();
+    if (data == null) {
+      return new SessionCaches();
+    }
+    final Object existing = data.get(KEY);
+    if (existing instanceof SessionCaches) {
+      return (SessionCaches) existing;
+    }
+    final SessionCaches caches = new SessionCaches();
+    if (data.set(KEY, existing, caches)) {
+      return caches;
+    }
+    // another module was faster
+    final Object winner = data.get(KEY);
+    return winner instanceof SessionCaches ? (SessionCaches) winner : caches;
+  }
+}
@@ -0,0 +1,499 @@
+package org.complykit.licensecheck.pom;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.complykit.licensecheck.model.PomInfo;
+
+/**
+ * The byte level twin of the StAX scanner in {@link PomScanner}: it walks the raw bytes of a pom, recognizes the
+ * ASCII tag names directly and only decodes the few values it's after (license names, parent coordinates) into
+ * strings. Comments, processing instructions, CDATA sections and the doctype are skipped, attribute values are
+ * honoured, end tags are checked against start tags on the levels that matter.
+ *
+ * This only works for encodings that are ASCII compatible (UTF-8, ISO-8859-x, windows-125x...); {@link #scan} returns
+ * null for anything else so the caller can fall back to a real XML parser.
+ */
+final class BytePomScanner
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final Charset ASCII = Charset.forName("US-ASCII");
+  private static final String ASCII_PROBE;
+
+  static {
+    final StringBuilder probe = new StringBuilder();
+    for (char c = ' '; c < 127; c++) {
+      probe.append(c);
+    }
+    probe.append("\t\r\n");
+    ASCII_PROBE = probe.toString();
+  }
+
+  private static final byte[] PROJECT = ascii("project");
+  private static final byte[] LICENSES = ascii("licenses");
+  private static final byte[] LICENSE = ascii("license");
+  private static final byte[] NAME = ascii("name");
+  private static final byte[] PARENT = ascii("parent");
+  private static final byte[] GROUP_ID = ascii("groupId");
+  private static final byte[] ARTIFACT_ID = ascii("artifactId");
+  private static final byte[] VERSION = ascii("version");
+
+  private static final byte[] COMMENT_START = ascii("<!--");
+  private static final byte[] COMMENT_END = ascii("-->");
+  private static final byte[] CDATA_START = ascii("<![CDATA[");
+  private static final byte[] CDATA_END = ascii("]]>");
+  private static final byte[] PI_END = ascii("?>");
+
+  private static final int TRACKED_DEPTH = 4;
+
+  private final ByteBuffer buffer;
+  private final int limit;
+  private Charset charset = UTF8;
+  private int position;
+
+  // start/end offsets of the local names of the open elements, for the levels we care about
+  private final int[] nameStart = new int[TRACKED_DEPTH];
+  private final int[] nameEnd = new int[TRACKED_DEPTH];
+  private int depth;
+
+  private final PomScanner.ParentListener listener;
+
+  private BytePomScanner(final ByteBuffer buffer, final PomScanner.ParentListener listener)
+  {
+    this.buffer = buffer;
+    this.listener = listener;
+    this.position = buffer.position();
+    this.limit = buffer.limit();
+  }
+
+  /**
+   * @param buffer the pom between position and limit; the buffer's position isn't changed
+   * @param listener told about the parent as soon as it has been read, may be null
+   * @return what was found, or null if the pom isn't in an ASCII compatible encoding (the listener hasn't been called
+   *         then)
+   * @throws IOException if the pom is malformed (up to the point where scanning stopped)
+   */
+  static PomInfo scan(final ByteBuffer buffer, final PomScanner.ParentListener listener) throws IOException
+  {
+    final BytePomScanner scanner = new BytePomScanner(buffer, listener);
+    if (!scanner.detectEncoding()) {
+      return null;
+    }
+    return scanner.scan();
+  }
+
+  private boolean detectEncoding()
+  {
+    if (limit - position >= 2) {
+      final int b0 = buffer.get(position) & 0xff;
+      final int b1 = buffer.get(position + 1) & 0xff;
+      if (b0 == 0xfe || b0 == 0xff || b0 == 0 || b1 == 0) {
+        return false; // UTF-16 or UTF-32
+      }
+      if (b0 == 0xef && limit - position >= 3 && b1 == 0xbb && (buffer.get(position + 2) & 0xff) == 0xbf) {
+        position += 3;
+        return true;
+      }
+    }
+    if (startsWith(position, ascii("<?xml"))) {
+      final int end = indexOf(position, PI_END);
+      final int encoding = end < 0 ? -1 : indexOf(position, ascii("encoding"), end);
+      if (encoding >= 0) {
+        int i = encoding + 8;
+        while (i < end && (isWhitespace(buffer.get(i)) || buffer.get(i) == '=')) {
+          i++;
+        }
+        if (i < end && (buffer.get(i) == '"' || buffer.get(i) == '\'')) {
+          final byte quote = buffer.get(i);
+          final int valueEnd = indexOf(i + 1, quote, end);
+          if (valueEnd > 0) {
+            try {
+              charset = Charset.forName(decode(i + 1, valueEnd, ASCII));
+            } catch (final IllegalCharsetNameException e) {
+              return false;
+            } catch (final UnsupportedCharsetException e) {
+              return false;
+            }
+          }
+        }
+      }
+    }
+    return charset == UTF8 || Arrays.equals(ASCII_PROBE.getBytes(charset), ASCII_PROBE.getBytes(ASCII));
+  }
+
+  private PomInfo scan() throws IOException
+  {
+    final List<String> licenseNames = new ArrayList<String>();
+    String groupId = null;
+    String artifactId = null;
+    String version = null;
+    boolean licenseDone = false;
+    boolean parentDone = false;
+
+    while (!(licenseDone && parentDone)) {
+      final int lt = indexOf(position, (byte) '<', limit);
+      if (lt < 0) {
+        if (depth > 0) {
+          throw new IOException("Unexpected end of file, " + depth + " element(s) not closed");
+        }
+        break;
+      }
+      position = lt;
+      if (skipMarkup()) {
+        continue;
+      }
+      if (lt + 1 < limit && buffer.get(lt + 1) == '/') {
+        final int start = lt + 2;
+        final int end = nameEnd(start);
+        position = closeTag(end);
+        if (depth == 0) {
+          throw new IOException("Unexpected end tag at offset " + lt);
+        }
+        depth--;
+        if (depth < TRACKED_DEPTH && !localNameEquals(start, end, nameStart[depth], nameEnd[depth])) {
+          throw new IOException("Mismatched end tag at offset " + lt);
+        }
+        if (depth == 1 && is(nameStart[1], nameEnd[1], PARENT)) {
+          parentDone = true;
+          if (listener != null && licenseNames.isEmpty() && groupId != null && artifactId != null && version != null) {
+            listener.parentFound(groupId + ":" + artifactId + ":" + version);
+          }
+        } else if (depth == 1 && is(nameStart[1], nameEnd[1], LICENSES)) {
+          licenseDone = true;
+        } else if (depth == 0) {
+          break;
+        }
+        continue;
+      }
+
+      final int start = lt + 1;
+      final int end = nameEnd(start);
+      final boolean empty = skipAttributes(end);
+      if (empty) {
+        continue;
+      }
+      if (depth < TRACKED_DEPTH) {
+        final int localStart = localNameStart(start, end);
+        nameStart[depth] = localStart;
+        nameEnd[depth] = end;
+      }
+      depth++;
+      if (depth == 4 && !licenseDone && is(3, NAME) && is(0, PROJECT) && is(1, LICENSES) && is(2, LICENSE)) {
+        // like <name/>, an empty name is no license
+        final String licenseName = readText();
+        if (licenseName.length() > 0) {
+          licenseNames.add(licenseName);
+        }
+      } else if (depth == 3 && is(0, PROJECT) && is(1, PARENT)) {
+        if (is(2, GROUP_ID)) {
+          groupId = readText();
+        } else if (is(2, ARTIFACT_ID)) {
+          artifactId = readText();
+        } else if (is(2, VERSION)) {
+          version = readText();
+        }
+      }
+    }
+
+    final String parentCoordinates = groupId != null && artifactId != null && version != null
+        ? groupId + ":" + artifactId + ":" + version : null;
+    return new PomInfo(licenseNames, parentCoordinates);
+  }
+
+  /**
+   * Skips a comment, processing instruction, CDATA section or doctype at the current position.
+   *
+   * @return true if something was skipped
+   */
+  private boolean skipMarkup() throws IOException
+  {
+    if (startsWith(position, COMMENT_START)) {
+      position = skipPast(position + COMMENT_START.length, COMMENT_END);
+      return true;
+    }
+    if (startsWith(position, CDATA_START)) {
+      position = skipPast(position + CDATA_START.length, CDATA_END);
+      return true;
+    }
+    if (position + 1 < limit && buffer.get(position + 1) == '?') {
+      position = skipPast(position + 2, PI_END);
+      return true;
+    }
+    if (position + 1 < limit && buffer.get(position + 1) == '!') {
+      // <!DOCTYPE ...> possibly with an internal subset in brackets
+      int i = position + 2;
+      int brackets = 0;
+      while (i < limit) {
+        final byte b = buffer.get(i);
+        if (b == '[') {
+          brackets++;
+        } else if (b == ']') {
+          brackets--;
+        } else if (b == '>' && brackets <= 0) {
+          position = i + 1;
+          return true;
+        }
+        i++;
+      }
+      throw new IOException("Unterminated declaration");
+    }
+    return false;
+  }
+
+  /**
+   * Reads the text content of the element that was just opened, up to and including its end tag.
+   */
+  private String readText() throws IOException
+  {
+    final StringBuilder text = new StringBuilder();
+    int segment = position;
+    while (true) {
+      final int lt = indexOf(position, (byte) '<', limit);
+      if (lt < 0) {
+        throw new IOException("Unexpected end of file in element text");
+      }
+      appendText(text, segment, lt);
+      if (startsWith(lt, COMMENT_START)) {
+        position = skipPast(lt + COMMENT_START.length, COMMENT_END);
+      } else if (startsWith(lt, CDATA_START)) {
+        final int end = indexOf(lt + CDATA_START.length, CDATA_END);
+        if (end < 0) {
+          throw new IOException("Unterminated CDATA section");
+        }
+        text.append(decode(lt + CDATA_START.length, end, charset));
+        position = end + CDATA_END.length;
+      } else if (lt + 1 < limit && buffer.get(lt + 1) == '?') {
+        position = skipPast(lt + 2, PI_END);
+      } else if (lt + 1 < limit && buffer.get(lt + 1) == '/') {
+        final int start = lt + 2;
+        final int end = nameEnd(start);
+        depth--;
+        if (depth < TRACKED_DEPTH && !localNameEquals(start, end, nameStart[depth], nameEnd[depth])) {
+          throw new IOException("Mismatched end tag at offset " + lt);
+        }
+        position = closeTag(end);
+        return text.toString().trim();
+      } else {
+        throw new IOException("Unexpected element in text at offset " + lt);
+      }
+      segment = position;
+    }
+  }
+
+  private void appendText(final StringBuilder text, final int from, final int to) throws IOException
+  {
+    if (from >= to) {
+      return;
+    }
+    final String raw = decode(from, to, charset);
+    if (raw.indexOf('&') < 0) {
+      text.append(raw);
+      return;
+    }
+    int i = 0;
+    while (i < raw.length()) {
+      final char c = raw.charAt(i);
+      if (c != '&') {
+        text.append(c);
+        i++;
+        continue;
+      }
+      final int semicolon = raw.indexOf(';', i);
+      if (semicolon < 0) {
+        throw new IOException("Unterminated entity reference");
+      }
+      final String entity = raw.substring(i + 1, semicolon);
+      if ("amp".equals(entity)) {
+        text.append('&');
+      } else if ("lt".equals(entity)) {
+        text.append('<');
+      } else if ("gt".equals(entity)) {
+        text.append('>');
+      } else if ("quot".equals(entity)) {
+        text.append('"');
+      } else if ("apos".equals(entity)) {
+        text.append('\'');
+      } else if (entity.startsWith("#x") || entity.startsWith("#X")) {
+        text.appendCodePoint(parseCodePoint(entity.substring(2), 16));
+      } else if (entity.startsWith("#")) {
+        text.appendCodePoint(parseCodePoint(entity.substring(1), 10));
+      } else {
+        throw new IOException("Undeclared entity &" + entity + ";");
+      }
+      i = semicolon + 1;
+    }
+  }
+
+  private static int parseCodePoint(final String digits, final int radix) throws IOException
+  {
+    try {
+      return Integer.parseInt(digits, radix);
+    } catch (final NumberFormatException e) {
+      throw new IOException("Invalid character reference " + digits);
+    }
+  }
+
+  /**
+   * Skips the attributes of a start tag.
+   *
+   * @return true if the tag was an empty element tag (&lt;x/&gt;)
+   */
+  private boolean skipAttributes(final int from) throws IOException
+  {
+    int i = from;
+    while (i < limit) {
+      final byte b = buffer.get(i);
+      if (b == '"' || b == '\'') {
+        i = indexOf(i + 1, b, limit);
+        if (i < 0) {
+          break;
+        }
+      } else if (b == '>') {
+        position = i + 1;
+        return buffer.get(i - 1) == '/';
+      }
+      i++;
+    }
+    throw new IOException("Unterminated start tag");
+  }
+
+  private int closeTag(final int from) throws IOException
+  {
+    final int gt = indexOf(from, (byte) '>', limit);
+    if (gt < 0) {
+      throw new IOException("Unterminated end tag");
+    }
+    return gt + 1;
+  }
+
+  private int nameEnd(final int from)
+  {
+    int i = from;
+    while (i < limit) {
+      final byte b = buffer.get(i);
+      if (isWhitespace(b) || b == '>' || b == '/') {
+        break;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  private int localNameStart(final int from, final int to)
+  {
+    for (int i = to - 1; i >= from; i--) {
+      if (buffer.get(i) == ':') {
+        return i + 1;
+      }
+    }
+    return from;
+  }
+
+  private boolean localNameEquals(final int from, final int to, final int expectedFrom, final int expectedTo)
+  {
+    final int start = localNameStart(from, to);
+    if (to - start != expectedTo - expectedFrom) {
+      return false;
+    }
+    for (int i = 0; i < to - start; i++) {
+      if (buffer.get(start + i) != buffer.get(expectedFrom + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean is(final int level, final byte[] name)
+  {
+    return is(nameStart[level], nameEnd[level], name);
+  }
+
+  private boolean is(final int from, final int to, final byte[] name)
+  {
+    if (to - from != name.length) {
+      return false;
+    }
+    for (int i = 0; i < name.length; i++) {
+      if (buffer.get(from + i) != name[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int skipPast(final int from, final byte[] terminator) throws IOException
+  {
+    final int index = indexOf(from, terminator);
+    if (index < 0) {
+      throw new IOException("Unexpected end of file, missing " + new String(terminator, ASCII));
+    }
+    return index + terminator.length;
+  }
+
+  private boolean startsWith(final int from, final byte[] prefix)
+  {
+    if (limit - from < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (buffer.get(from + i) != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int indexOf(final int from, final byte b, final int to)
+  {
+    for (int i = from; i < to; i++) {
+      if (buffer.get(i) == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int indexOf(final int from, final byte[] pattern)
+  {
+    return indexOf(from, pattern, limit);
+  }
+
+  private int indexOf(final int from, final byte[] pattern, final int to)
+  {
+    final int last = to - pattern.length;
+    for (int i = indexOf(from, pattern[0], to); i >= 0 && i <= last; i = indexOf(i + 1, pattern[0], to)) {
+      if (startsWith(i, pattern)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private String decode(final int from, final int to, final Charset charset)
+  {
+    if (buffer.hasArray()) {
+      return new String(buffer.array(), buffer.arrayOffset() + from, to - from, charset);
+    }
+    final byte[] bytes = new byte[to - from];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(from + i);
+    }
+    return new String(bytes, charset);
+  }
+
+  private static boolean isWhitespace(final byte b)
+  {
+    return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+  }
+
+  private static byte[] ascii(final String s)
+  {
+    return s.getBytes(ASCII);
+  }
+}
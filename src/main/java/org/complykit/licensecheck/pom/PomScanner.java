@@ -0,0 +1,260 @@
+package org.complykit.licensecheck.pom;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.complykit.licensecheck.model.PomInfo;
+
+/**
+ * Pulls the license names and the parent coordinates out of a pom in a single forward pass. Parsing stops as soon as
+ * both the licenses and the parent have been seen, so the rest of large poms (dependency management, build,
+ * profiles...) is never read.
+ *
+ * Only the top level /project/licenses and /project/parent elements count, a &lt;license&gt; in a comment or a
+ * plugin configuration doesn't.
+ *
+ * Files and buffers are scanned on the byte level by {@link BytePomScanner}, without decoding anything but the values
+ * that are returned. Files are read into a buffer that's reused by the calling thread (very large ones are memory
+ * mapped instead). Poms in encodings that aren't ASCII compatible, and streams, go through StAX.
+ */
+public final class PomScanner
+{
+  /**
+   * Learns about a pom's parent while the rest of the pom is still being scanned.
+   */
+  public interface ParentListener
+  {
+    /**
+     * Called when the parent element has been read, unless a license has already been found before it.
+     *
+     * @param coordinates groupId:artifactId:version
+     */
+    void parentFound(String coordinates);
+  }
+
+  private static final XMLInputFactory FACTORY = createFactory();
+
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+  private static final int MAP_THRESHOLD = 1024 * 1024;
+
+  /*
+   * a plain ThreadLocal holding JDK classes only, so a thread that outlives the build (mvnd, IDEs) doesn't pin the
+   * plugin's class loader; see releaseBuffer()
+   */
+  private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>();
+
+  private PomScanner()
+  {
+  }
+
+  public static PomInfo scan(final File pom) throws IOException
+  {
+    return scan(pom, null);
+  }
+
+  /**
+   * @param pom
+   * @param listener told about the parent as soon as it has been read, may be null
+   * @return what was found
+   * @throws IOException if the pom cannot be read or isn't well-formed (up to the point where scanning stopped)
+   */
+  public static PomInfo scan(final File pom, final ParentListener listener) throws IOException
+  {
+    final FileInputStream in = new FileInputStream(pom);
+    try {
+      final FileChannel channel = in.getChannel();
+      final long size = channel.size();
+      if (size > MAP_THRESHOLD) {
+        return scan(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), listener);
+      }
+      return scan(read(channel, (int) size), listener);
+    } catch (final IOException e) {
+      throw new IOException("Cannot read " + pom + ": " + e.getMessage(), e);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * @param buffer the pom between position and limit, the buffer itself isn't modified
+   * @return what was found
+   * @throws IOException if the pom isn't well-formed (up to the point where scanning stopped)
+   */
+  public static PomInfo scan(final ByteBuffer buffer) throws IOException
+  {
+    return scan(buffer, null);
+  }
+
+  /**
+   * @param buffer the pom between position and limit, the buffer itself isn't modified
+   * @param listener told about the parent as soon as it has been read, may be null
+   * @return what was found
+   * @throws IOException if the pom isn't well-formed (up to the point where scanning stopped)
+   */
+  public static PomInfo scan(final ByteBuffer buffer, final ParentListener listener) throws IOException
+  {
+    final PomInfo info = BytePomScanner.scan(buffer, listener);
+    if (info != null) {
+      return info;
+    }
+    if (buffer.hasArray()) {
+      return scan(new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(),
+          buffer.remaining()), listener);
+    }
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return scan(new ByteArrayInputStream(bytes), listener);
+  }
+
+  /**
+   * @param in the pom, the encoding is taken from the XML declaration
+   * @return what was found
+   * @throws IOException if the pom cannot be read or isn't well-formed (up to the point where scanning stopped)
+   */
+  public static PomInfo scan(final InputStream in) throws IOException
+  {
+    return scan(in, null);
+  }
+
+  /**
+   * @param in the pom, the encoding is taken from the XML declaration
+   * @param listener told about the parent as soon as it has been read, may be null
+   * @return what was found
+   * @throws IOException if the pom cannot be read or isn't well-formed (up to the point where scanning stopped)
+   */
+  public static PomInfo scan(final InputStream in, final ParentListener listener) throws IOException
+  {
+    try {
+      final XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+      try {
+        return scan(reader, listener);
+      } finally {
+        reader.close();
+      }
+    } catch (final XMLStreamException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  private static PomInfo scan(final XMLStreamReader reader, final ParentListener listener)
+      throws XMLStreamException
+  {
+    final List<String> licenseNames = new ArrayList<String>();
+    String groupId = null;
+    String artifactId = null;
+    String version = null;
+    boolean licenseDone = false;
+    boolean parentDone = false;
+
+    // element names from the root down to the current element
+    final String[] path = new String[4];
+    int depth = 0;
+
+    while (reader.hasNext() && !(licenseDone && parentDone)) {
+      final int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        final String name = reader.getLocalName();
+        if (depth < path.length) {
+          path[depth] = name;
+        }
+        depth++;
+        if (!licenseDone && depth == 4 && "name".equals(name) && is(path, "project", "licenses", "license")) {
+          // an empty name is no license, see BytePomScanner
+          final String licenseName = reader.getElementText().trim();
+          if (licenseName.length() > 0) {
+            licenseNames.add(licenseName);
+          }
+          depth--;
+        } else if (depth == 3 && is(path, "project", "parent")) {
+          if ("groupId".equals(name)) {
+            groupId = reader.getElementText().trim();
+            depth--;
+          } else if ("artifactId".equals(name)) {
+            artifactId = reader.getElementText().trim();
+            depth--;
+          } else if ("version".equals(name)) {
+            version = reader.getElementText().trim();
+            depth--;
+          }
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+        if (depth == 1 && "parent".equals(reader.getLocalName())) {
+          parentDone = true;
+          if (listener != null && licenseNames.isEmpty() && groupId != null && artifactId != null && version != null) {
+            listener.parentFound(groupId + ":" + artifactId + ":" + version);
+          }
+        } else if (depth == 1 && "licenses".equals(reader.getLocalName())) {
+          licenseDone = true;
+        } else if (depth == 0) {
+          break;
+        }
+      }
+    }
+
+    final String parentCoordinates = groupId != null && artifactId != null && version != null
+        ? groupId + ":" + artifactId + ":" + version : null;
+    return new PomInfo(licenseNames, parentCoordinates);
+  }
+
+  /**
+   * Drops the read buffer of the current thread. Called by the threads of the plugin before they end, and by the
+   * build thread when a check is done.
+   */
+  public static void releaseBuffer()
+  {
+    BUFFERS.remove();
+  }
+
+  /**
+   * Reads a file into this thread's buffer, growing it if needed.
+   */
+  private static ByteBuffer read(final FileChannel channel, final int size) throws IOException
+  {
+    ByteBuffer buffer = BUFFERS.get();
+    if (buffer == null || buffer.capacity() < size) {
+      buffer = ByteBuffer.allocate(buffer == null ? Math.max(size, INITIAL_BUFFER_SIZE)
+          : Math.max(size, buffer.capacity() * 2));
+      BUFFERS.set(buffer);
+    }
+    buffer.clear();
+    while (buffer.position() < size) {
+      if (channel.read(buffer) < 0) {
+        break;
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static boolean is(final String[] path, final String... expected)
+  {
+    for (int i = 0; i < expected.length; i++) {
+      if (!expected[i].equals(path[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static XMLInputFactory createFactory()
+  {
+    final XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    return factory;
+  }
+}
@@ -0,0 +1,364 @@
+package org.complykit.licensecheck.profile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.GsonBuilder;
+
+/**
+ * Collects the wall time and call count of each phase of a license check, plus cache hits and misses. Safe to use
+ * from the worker threads concurrently.
+ *
+ * Phase times are summed over all threads, and the phases nest (the parent search includes reading the parent poms,
+ * for instance), so only {@link Phase#TOTAL} is elapsed time. The {@link #DISABLED} instance records nothing and
+ * doesn't even read the clock.
+ *
+ * If tracing is on, every phase is also kept as a span (start, duration, thread) and can be written in the Chrome
+ * trace-event format, see {@link #writeTrace(File)}.
+ */
+public class Profiler
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  public enum Phase
+  {
+    TOTAL("total"),
+    COLLECT("collect dependency graph"),
+    PREFETCH("batch resolve"),
+    CHECK("check artifact"),
+    RESOLVE("resolve artifact"),
+    PARENT_SEARCH("parent search"),
+    READ_POM("read pom"),
+    LICENSE_MATCH("license match"),
+    CLASSIFY("classify");
+
+    private final String displayName;
+
+    Phase(String displayName)
+    {
+      this.displayName = displayName;
+    }
+
+    public String getDisplayName()
+    {
+      return displayName;
+    }
+  }
+
+  /**
+   * Counters come in hit/miss pairs, see {@link #getHitRate(Counter)}.
+   */
+  public enum Counter
+  {
+    LICENSE_CACHE_HIT("license cache"),
+    LICENSE_CACHE_MISS("license cache"),
+    PARENT_LICENSE_HIT("parent licenses"),
+    PARENT_LICENSE_MISS("parent licenses"),
+    LOCAL_POM_HIT("local repository poms"),
+    LOCAL_POM_MISS("local repository poms"),
+    LICENSE_MEMO_HIT("license name memo"),
+    LICENSE_MEMO_MISS("license name memo"),
+    POM_HIT("parsed poms"),
+    POM_MISS("parsed poms"),
+    VERDICT_HIT("artifact verdicts"),
+    VERDICT_MISS("artifact verdicts"),
+    NEGATIVE_CACHE_HIT("failure cache"),
+    NEGATIVE_CACHE_MISS("failure cache");
+
+    private final String cacheName;
+
+    Counter(String cacheName)
+    {
+      this.cacheName = cacheName;
+    }
+
+    public String getCacheName()
+    {
+      return cacheName;
+    }
+
+    boolean isHit()
+    {
+      return name().endsWith("_HIT");
+    }
+
+    Counter getMiss()
+    {
+      return valueOf(name().substring(0, name().length() - "HIT".length()) + "MISS");
+    }
+  }
+
+  /**
+   * A finished phase, for the trace.
+   */
+  private static final class Span
+  {
+    final Phase phase;
+    final String detail;
+    final long start;
+    final long duration;
+    final long threadId;
+
+    Span(Phase phase, String detail, long start, long duration, long threadId)
+    {
+      this.phase = phase;
+      this.detail = detail;
+      this.start = start;
+      this.duration = duration;
+      this.threadId = threadId;
+    }
+  }
+
+  /**
+   * Enough for a few hundred thousand artifacts; beyond that spans are dropped rather than running out of memory.
+   */
+  static final int MAX_SPANS = 1000000;
+
+  public static final Profiler DISABLED = new Profiler(false, false);
+
+  private final boolean enabled;
+  private final boolean tracing;
+  private final long origin = System.nanoTime();
+  private final Queue<Span> spans = new ConcurrentLinkedQueue<Span>();
+  private final AtomicInteger spanCount = new AtomicInteger();
+  private final Map<Long, String> threadNames = new ConcurrentHashMap<Long, String>();
+  private final Map<Phase, LongAdder> nanos = new EnumMap<Phase, LongAdder>(Phase.class);
+  private final Map<Phase, LongAdder> calls = new EnumMap<Phase, LongAdder>(Phase.class);
+  private final Map<Counter, LongAdder> counters = new EnumMap<Counter, LongAdder>(Counter.class);
+
+  public Profiler()
+  {
+    this(true, false);
+  }
+
+  /**
+   * @param timing whether to sum up phase times and count cache hits
+   * @param tracing whether to keep every phase as a span
+   */
+  public Profiler(boolean timing, boolean tracing)
+  {
+    this.enabled = timing;
+    this.tracing = tracing;
+    // filled up front, so the maps are only ever read concurrently
+    for (final Phase phase : Phase.values()) {
+      nanos.put(phase, new LongAdder());
+      calls.put(phase, new LongAdder());
+    }
+    for (final Counter counter : Counter.values()) {
+      counters.put(counter, new LongAdder());
+    }
+  }
+
+  public boolean isEnabled()
+  {
+    return enabled;
+  }
+
+  public boolean isTracing()
+  {
+    return tracing;
+  }
+
+  /**
+   * @return the start time to pass to {@link #stop(Phase, long)}
+   */
+  public long start()
+  {
+    return enabled || tracing ? System.nanoTime() : 0;
+  }
+
+  public void stop(Phase phase, long start)
+  {
+    stop(phase, start, null);
+  }
+
+  /**
+   * @param detail what the phase was about (artifact coordinates, a pom file, ...), shown in the trace
+   */
+  public void stop(Phase phase, long start, String detail)
+  {
+    if (!enabled && !tracing) {
+      return;
+    }
+    final long duration = System.nanoTime() - start;
+    if (enabled) {
+      nanos.get(phase).add(duration);
+      calls.get(phase).increment();
+    }
+    if (tracing && spanCount.incrementAndGet() <= MAX_SPANS) {
+      final Thread thread = Thread.currentThread();
+      if (!threadNames.containsKey(thread.getId())) {
+        threadNames.put(thread.getId(), thread.getName());
+      }
+      spans.add(new Span(phase, detail, start, duration, thread.getId()));
+    }
+  }
+
+  public void increment(Counter counter)
+  {
+    if (enabled) {
+      counters.get(counter).increment();
+    }
+  }
+
+  public void add(Counter counter, long count)
+  {
+    if (enabled) {
+      counters.get(counter).add(count);
+    }
+  }
+
+  public long getNanos(Phase phase)
+  {
+    return nanos.get(phase).sum();
+  }
+
+  public long getCalls(Phase phase)
+  {
+    return calls.get(phase).sum();
+  }
+
+  public long getCount(Counter counter)
+  {
+    return counters.get(counter).sum();
+  }
+
+  /**
+   * @return the number of spans recorded so far, including the ones dropped beyond {@link #MAX_SPANS}
+   */
+  public int getSpanCount()
+  {
+    return spanCount.get();
+  }
+
+  /**
+   * @param hit one of the *_HIT counters
+   * @return hits / (hits + misses), or -1 if the cache wasn't asked at all
+   */
+  public double getHitRate(Counter hit)
+  {
+    final long hits = getCount(hit);
+    final long total = hits + getCount(hit.getMiss());
+    return total == 0 ? -1 : (double) hits / total;
+  }
+
+  /**
+   * @return the summary table, one line per row
+   */
+  public List<String> formatSummary()
+  {
+    final List<String> lines = new ArrayList<String>();
+    lines.add(String.format(Locale.ENGLISH, "%-26s %10s %12s %12s", "Phase", "Calls", "Time (ms)", "Avg (us)"));
+    for (final Phase phase : Phase.values()) {
+      final long count = getCalls(phase);
+      final long time = getNanos(phase);
+      lines.add(String.format(Locale.ENGLISH, "%-26s %10d %12.1f %12.1f", phase.getDisplayName(), count,
+          time / 1e6, count == 0 ? 0.0 : time / 1e3 / count));
+    }
+    lines.add("");
+    lines.add(String.format(Locale.ENGLISH, "%-26s %10s %12s %12s", "Cache", "Hits", "Misses", "Hit rate"));
+    for (final Counter counter : Counter.values()) {
+      if (counter.isHit()) {
+        final double rate = getHitRate(counter);
+        lines.add(String.format(Locale.ENGLISH, "%-26s %10d %12d %12s", counter.getCacheName(), getCount(counter),
+            getCount(counter.getMiss()), rate < 0 ? "n/a" : String.format(Locale.ENGLISH, "%.1f%%", rate * 100)));
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * Writes the numbers as JSON, for tooling.
+   */
+  public void writeJson(File file) throws IOException
+  {
+    final Map<String, Object> phases = new LinkedHashMap<String, Object>();
+    for (final Phase phase : Phase.values()) {
+      final Map<String, Object> values = new LinkedHashMap<String, Object>();
+      values.put("calls", getCalls(phase));
+      values.put("millis", TimeUnit.NANOSECONDS.toMillis(getNanos(phase)));
+      values.put("nanos", getNanos(phase));
+      phases.put(phase.name().toLowerCase(Locale.ENGLISH), values);
+    }
+    final Map<String, Object> caches = new LinkedHashMap<String, Object>();
+    for (final Counter counter : Counter.values()) {
+      if (counter.isHit()) {
+        final Map<String, Object> values = new LinkedHashMap<String, Object>();
+        values.put("hits", getCount(counter));
+        values.put("misses", getCount(counter.getMiss()));
+        final double rate = getHitRate(counter);
+        values.put("hitRate", rate < 0 ? null : rate);
+        final String name = counter.name();
+        caches.put(name.substring(0, name.length() - "_HIT".length()).toLowerCase(Locale.ENGLISH), values);
+      }
+    }
+    final Map<String, Object> contents = new LinkedHashMap<String, Object>();
+    contents.put("phases", phases);
+    contents.put("caches", caches);
+
+    file.getParentFile().mkdirs();
+    final Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF8);
+    try {
+      new GsonBuilder().setPrettyPrinting().create().toJson(contents, writer);
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Writes the spans in the Chrome trace-event format (complete events, timestamps in microseconds since the profiler
+   * was created), to be loaded into chrome://tracing, Perfetto or Speedscope.
+   */
+  public void writeTrace(File file) throws IOException
+  {
+    final List<Object> events = new ArrayList<Object>();
+    for (final Map.Entry<Long, String> thread : threadNames.entrySet()) {
+      final Map<String, Object> event = new LinkedHashMap<String, Object>();
+      event.put("name", "thread_name");
+      event.put("ph", "M");
+      event.put("pid", 1);
+      event.put("tid", thread.getKey());
+      event.put("args", Collections.singletonMap("name", thread.getValue()));
+      events.add(event);
+    }
+    for (final Span span : spans) {
+      final Map<String, Object> event = new LinkedHashMap<String, Object>();
+      event.put("name", span.detail == null ? span.phase.getDisplayName() : span.detail);
+      event.put("cat", span.phase.getDisplayName());
+      event.put("ph", "X");
+      event.put("ts", (span.start - origin) / 1e3);
+      event.put("dur", span.duration / 1e3);
+      event.put("pid", 1);
+      event.put("tid", span.threadId);
+      events.add(event);
+    }
+    final Map<String, Object> contents = new LinkedHashMap<String, Object>();
+    contents.put("traceEvents", events);
+    contents.put("displayTimeUnit", "ms");
+
+    file.getParentFile().mkdirs();
+    final Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF8);
+    try {
+      new GsonBuilder().create().toJson(contents, writer);
+    } finally {
+      writer.close();
+    }
+  }
+}
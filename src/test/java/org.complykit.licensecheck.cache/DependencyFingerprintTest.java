@@ -0,0 +1,63 @@
+package org.complykit.licensecheck.cache;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DependencyFingerprintTest {
+
+    @Test
+    public void testOrderDoesNotMatter() {
+        DependencyFingerprint first = new DependencyFingerprint();
+        first.addArtifact("org.example:a:1.0", "compile");
+        first.addArtifact("org.example:b:1.0", "test");
+        first.addSetting("blacklist", Arrays.asList("gpl-2.0", "agpl-3.0"));
+        first.addSetting("transitive", false);
+
+        DependencyFingerprint second = new DependencyFingerprint();
+        second.addSetting("transitive", false);
+        second.addArtifact("org.example:b:1.0", "test");
+        second.addSetting("blacklist", Arrays.asList("agpl-3.0", "gpl-2.0"));
+        second.addArtifact("org.example:a:1.0", "compile");
+
+        assertEquals(first.toHex(), second.toHex());
+        assertFalse(first.hasSnapshots());
+    }
+
+    @Test
+    public void testChanges() {
+        DependencyFingerprint base = fingerprint("org.example:a:1.0", "compile", "gpl-2.0");
+        assertFalse(base.toHex().equals(fingerprint("org.example:a:1.1", "compile", "gpl-2.0").toHex()));
+        assertFalse(base.toHex().equals(fingerprint("org.example:a:1.0", "test", "gpl-2.0").toHex()));
+        assertFalse(base.toHex().equals(fingerprint("org.example:a:1.0", "compile", "gpl-3.0").toHex()));
+        assertTrue(fingerprint("org.example:a:1.0-SNAPSHOT", "compile", "gpl-2.0").hasSnapshots());
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        File file = new File(File.createTempFile("fingerprint", "").getPath() + ".d", "license-check.fingerprint");
+        try {
+            assertNull(DependencyFingerprint.read(file));
+            String hex = fingerprint("org.example:a:1.0", "compile", "gpl-2.0").toHex();
+            DependencyFingerprint.write(file, hex);
+            assertEquals(hex, DependencyFingerprint.read(file));
+        } finally {
+            file.delete();
+            file.getParentFile().delete();
+        }
+    }
+
+    private static DependencyFingerprint fingerprint(String coordinates, String scope, String blacklisted) {
+        DependencyFingerprint fingerprint = new DependencyFingerprint();
+        fingerprint.addArtifact(coordinates, scope);
+        fingerprint.addSetting("blacklist", Arrays.asList(blacklisted));
+        return fingerprint;
+    }
+}
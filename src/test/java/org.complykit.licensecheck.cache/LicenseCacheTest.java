@@ -0,0 +1,171 @@
+package org.complykit.licensecheck.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class LicenseCacheTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("license-cache", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        File pom = write("lib-1.0.pom", "<project/>");
+        File file = new File(directory, "licenses.json");
+
+        LicenseCache cache = new LicenseCache(file, "table-1");
+        cache.put("org.example:lib:1.0", pom, "MIT License", "mit");
+        cache.put("org.example:lib:1.1-SNAPSHOT", pom, "MIT License", "mit");
+        cache.save();
+
+        LicenseCache reloaded = new LicenseCache(file, "table-1");
+        reloaded.load();
+        assertEquals(1, reloaded.size());
+        LicenseCache.Entry entry = reloaded.get("org.example:lib:1.0", pom);
+        assertNotNull(entry);
+        assertEquals("MIT License", entry.licenseName);
+        assertEquals("mit", entry.licenseCode);
+        assertNull(reloaded.get("org.example:lib:1.1-SNAPSHOT", pom));
+    }
+
+    @Test
+    public void testDifferentDescriptorsDiscardEntries() throws IOException {
+        File pom = write("lib-1.0.pom", "<project/>");
+        File file = new File(directory, "licenses.json");
+
+        LicenseCache cache = new LicenseCache(file, "table-1");
+        cache.put("org.example:lib:1.0", pom, "MIT License", "mit");
+        cache.save();
+
+        LicenseCache reloaded = new LicenseCache(file, "table-2");
+        reloaded.load();
+        assertEquals(0, reloaded.size());
+    }
+
+    @Test
+    public void testChecksumMismatchInvalidatesEntry() throws IOException {
+        File pom = write("lib-1.0.pom", "<project/>");
+        File file = new File(directory, "licenses.json");
+
+        LicenseCache cache = new LicenseCache(file, "table-1");
+        cache.put("org.example:lib:1.0", pom, "MIT License", "mit");
+        cache.save();
+
+        write("lib-1.0.pom.sha1", "0000000000000000000000000000000000000000");
+        assertNull(load(file).get("org.example:lib:1.0", pom));
+    }
+
+    @Test
+    public void testChangedPomInvalidatesEntry() throws IOException {
+        File pom = write("lib-1.0.pom", "<project/>");
+        File file = new File(directory, "licenses.json");
+
+        LicenseCache cache = new LicenseCache(file, "table-1");
+        cache.put("org.example:lib:1.0", pom, "MIT License", "mit");
+        cache.save();
+        assertNotNull(load(file).get("org.example:lib:1.0", pom));
+
+        write("lib-1.0.pom", "<project><licenses/></project>");
+        assertNull(load(file).get("org.example:lib:1.0", pom));
+    }
+
+    @Test
+    public void testTouchedPomKeepsEntry() throws IOException {
+        File pom = write("lib-1.0.pom", "<project/>");
+        File file = new File(directory, "licenses.json");
+
+        LicenseCache cache = new LicenseCache(file, "table-1");
+        cache.put("org.example:lib:1.0", pom, "MIT License", "mit");
+        cache.save();
+
+        // same contents, downloaded again: hashed once, then known by size and time
+        pom.setLastModified(pom.lastModified() - 60000);
+        LicenseCache reloaded = load(file);
+        assertNotNull(reloaded.get("org.example:lib:1.0", pom));
+        reloaded.save();
+
+        // size and time unchanged, so the contents aren't looked at
+        long lastModified = pom.lastModified();
+        write("lib-1.0.pom", "<PROJECT/>");
+        pom.setLastModified(lastModified);
+        assertNotNull(load(file).get("org.example:lib:1.0", pom));
+    }
+
+    @Test
+    public void testEntriesAreCheckedOnce() throws IOException {
+        File pom = write("lib-1.0.pom", "<project/>");
+        File file = new File(directory, "licenses.json");
+
+        LicenseCache cache = new LicenseCache(file, "table-1");
+        cache.put("org.example:lib:1.0", pom, "MIT License", "mit");
+        cache.save();
+
+        LicenseCache reloaded = load(file);
+        assertNotNull(reloaded.get("org.example:lib:1.0", pom));
+        write("lib-1.0.pom", "<project><licenses/></project>");
+        assertNotNull(reloaded.get("org.example:lib:1.0", pom));
+    }
+
+    @Test
+    public void testSaveDropsInvalidatedEntries() throws IOException {
+        File pom = write("lib-1.0.pom", "<project/>");
+        File file = new File(directory, "licenses.json");
+
+        LicenseCache cache = new LicenseCache(file, "table-1");
+        cache.put("org.example:lib:1.0", pom, "MIT License", "mit");
+        cache.put("org.example:other:1.0", null, "MIT License", "mit");
+        cache.save();
+
+        write("lib-1.0.pom", "<project><licenses/></project>");
+        LicenseCache reloaded = new LicenseCache(file, "table-1");
+        reloaded.load();
+        assertNull(reloaded.get("org.example:lib:1.0", pom));
+        reloaded.save();
+
+        LicenseCache saved = new LicenseCache(file, "table-1");
+        saved.load();
+        assertEquals(1, saved.size());
+        assertNull(saved.get("org.example:lib:1.0", null));
+        assertNotNull(saved.get("org.example:other:1.0", null));
+    }
+
+    private static LicenseCache load(File file) throws IOException {
+        LicenseCache cache = new LicenseCache(file, "table-1");
+        cache.load();
+        return cache;
+    }
+
+    private File write(String name, String contents) throws IOException {
+        File file = new File(directory, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
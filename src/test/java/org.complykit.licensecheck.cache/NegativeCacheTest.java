@@ -0,0 +1,91 @@
+package org.complykit.licensecheck.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class NegativeCacheTest {
+
+    private File directory;
+
+    private long now = 1000000L;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("negative-cache", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        File file = new File(directory, "failures.json");
+
+        NegativeCache cache = newCache(file, 1000);
+        cache.put("org.example:lib:1.0", NegativeCache.Reason.NO_LICENSE);
+        cache.put("org.example:parent:1", NegativeCache.Reason.UNRESOLVABLE);
+        cache.put("org.example:lib:1.1-SNAPSHOT", NegativeCache.Reason.UNRESOLVABLE);
+        assertEquals(NegativeCache.Reason.UNRESOLVABLE, cache.get("org.example:lib:1.1-SNAPSHOT"));
+        cache.save();
+
+        NegativeCache reloaded = newCache(file, 1000);
+        reloaded.load();
+        assertEquals(2, reloaded.size());
+        assertEquals(NegativeCache.Reason.NO_LICENSE, reloaded.get("org.example:lib:1.0"));
+        assertEquals(NegativeCache.Reason.UNRESOLVABLE, reloaded.get("org.example:parent:1"));
+        assertNull(reloaded.get("org.example:lib:1.1-SNAPSHOT"));
+    }
+
+    @Test
+    public void testEntriesExpire() throws IOException {
+        File file = new File(directory, "failures.json");
+
+        NegativeCache cache = newCache(file, 1000);
+        cache.put("org.example:parent:1", NegativeCache.Reason.UNRESOLVABLE);
+        cache.save();
+
+        now += 999;
+        assertEquals(NegativeCache.Reason.UNRESOLVABLE, cache.get("org.example:parent:1"));
+        NegativeCache reloaded = newCache(file, 1000);
+        reloaded.load();
+        assertEquals(1, reloaded.size());
+
+        now += 1;
+        assertNull(cache.get("org.example:parent:1"));
+        reloaded = newCache(file, 1000);
+        reloaded.load();
+        assertEquals(0, reloaded.size());
+    }
+
+    @Test
+    public void testInMemoryCacheIsNotSaved() throws IOException {
+        NegativeCache cache = new NegativeCache();
+        cache.put("org.example:parent:1", NegativeCache.Reason.UNRESOLVABLE);
+        cache.save();
+        assertEquals(NegativeCache.Reason.UNRESOLVABLE, cache.get("org.example:parent:1"));
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    private NegativeCache newCache(File file, long timeToLive) {
+        return new NegativeCache(file, timeToLive) {
+            @Override
+            long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+}
@@ -0,0 +1,88 @@
+package org.complykit.licensecheck.cache;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightCacheTest {
+
+    @Test
+    public void testConcurrentCallersLoadOnce() throws Exception {
+        final SingleFlightCache<String, String> cache = new SingleFlightCache<String, String>();
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<String> loader = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                loads.incrementAndGet();
+                started.countDown();
+                release.await();
+                return "value";
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return cache.get("key", loader);
+                    }
+                }));
+            }
+            started.await();
+            Thread.sleep(50);
+            release.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("value", future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(7, cache.getHits());
+    }
+
+    @Test
+    public void testFailuresAreNotCached() throws Exception {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<String, String>();
+        try {
+            cache.get("key", new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    throw new IOException("broken");
+                }
+            });
+            fail("the loader failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(0, cache.size());
+
+        assertNull(cache.get("key", new Callable<String>() {
+            @Override
+            public String call() {
+                return null;
+            }
+        }));
+        assertEquals(1, cache.size());
+    }
+}
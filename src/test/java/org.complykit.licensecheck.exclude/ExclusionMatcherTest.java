@@ -0,0 +1,74 @@
+package org.complykit.licensecheck.exclude;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExclusionMatcherTest {
+
+    @Test
+    public void testExact() {
+        ExclusionMatcher matcher = new ExclusionMatcher(Arrays.asList("org.Example:Lib:1.0"),
+                Collections.<String>emptyList(), Collections.<Pattern>emptyList());
+        assertTrue(matcher.matches("org.example:lib:1.0"));
+        assertTrue(matcher.matches("ORG.EXAMPLE:LIB:1.0"));
+        assertFalse(matcher.matches("org.example:lib:1.1"));
+        assertFalse(matcher.matches(null));
+    }
+
+    @Test
+    public void testGlobs() {
+        ExclusionMatcher matcher = new ExclusionMatcher(Collections.<String>emptyList(),
+                Arrays.asList("com.bigco.*:*:*", "org.example:*-impl:1.*", "org.other", "net.*.tools:cli"),
+                Collections.<Pattern>emptyList());
+        assertTrue(matcher.matches("com.bigco.team:lib:1.0"));
+        assertTrue(matcher.matches("COM.BIGCO.Team.sub:lib:1.0"));
+        assertFalse(matcher.matches("com.bigcorp:lib:1.0"));
+        assertTrue(matcher.matches("org.example:core-impl:1.2"));
+        assertFalse(matcher.matches("org.example:core-impl:2.0"));
+        assertFalse(matcher.matches("org.example:core-api:1.2"));
+        assertTrue(matcher.matches("org.other:anything:9"));
+        assertFalse(matcher.matches("org.other.sub:anything:9"));
+        assertTrue(matcher.matches("net.a.b.tools:cli:3"));
+        assertFalse(matcher.matches("net.a.b.tools:gui:3"));
+    }
+
+    @Test
+    public void testRegexes() {
+        List<Pattern> regexes = new ArrayList<Pattern>();
+        regexes.add(Pattern.compile("com\\.bigco\\..*:.*:.*"));
+        regexes.add(Pattern.compile("(?i)org\\.EXAMPLE:.*:1\\..*"));
+        regexes.add(Pattern.compile("([a-z]+)\\.test:\\1:.*"));
+        regexes.add(Pattern.compile("(?<group>net\\.[a-z]+):.*:.*"));
+        ExclusionMatcher matcher = new ExclusionMatcher(Collections.<String>emptyList(),
+                Collections.<String>emptyList(), regexes);
+        assertEquals(2, matcher.getSeparateRegexCount());
+
+        assertTrue(matcher.matches("com.bigco.team:lib:1.0"));
+        assertFalse(matcher.matches("COM.BIGCO.team:lib:1.0"));
+        assertTrue(matcher.matches("org.example:lib:1.0"));
+        // the inline flag doesn't leak into the other regexes
+        assertFalse(matcher.matches("COM.BIGCO.team:lib:1.0"));
+        assertTrue(matcher.matches("foo.test:foo:1"));
+        assertFalse(matcher.matches("foo.test:bar:1"));
+        assertTrue(matcher.matches("net.example:lib:1"));
+        assertFalse(matcher.matches("org.example:lib:2.0"));
+    }
+
+    @Test
+    public void testMatchesGlob() {
+        assertTrue(ExclusionMatcher.matchesGlob("*", 0, "", 0));
+        assertTrue(ExclusionMatcher.matchesGlob("a*b*c", 0, "aXbYc", 0));
+        assertTrue(ExclusionMatcher.matchesGlob("a*b", 0, "abbb", 0));
+        assertFalse(ExclusionMatcher.matchesGlob("a*b", 0, "abc", 0));
+        assertFalse(ExclusionMatcher.matchesGlob("ab", 0, "a", 0));
+    }
+}
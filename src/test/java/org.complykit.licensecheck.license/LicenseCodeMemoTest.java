@@ -0,0 +1,38 @@
+package org.complykit.licensecheck.license;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LicenseCodeMemoTest {
+
+    @Test
+    public void testNormalize() {
+        assertEquals("the apache software license, version 2.0",
+                LicenseCodeMemo.normalize("  The Apache Software\n   License, Version 2.0 "));
+        assertEquals("", LicenseCodeMemo.normalize(" \t"));
+    }
+
+    @Test
+    public void testCountsHitsAndMisses() {
+        LicenseCodeMemo memo = new LicenseCodeMemo(LicenseMatcher.getDefault(), 10);
+        assertEquals("apache-2.0", memo.findCode("The Apache Software License, Version 2.0"));
+        assertEquals("apache-2.0", memo.findCode("the apache software license,  version 2.0"));
+        assertNull(memo.findCode("Public Domain"));
+        assertNull(memo.findCode("Public Domain"));
+        assertEquals(2, memo.getHits());
+        assertEquals(2, memo.getMisses());
+        assertEquals(2, memo.size());
+    }
+
+    @Test
+    public void testStopsGrowingAtMaxSize() {
+        LicenseCodeMemo memo = new LicenseCodeMemo(LicenseMatcher.getDefault(), 1);
+        assertEquals("mit", memo.findCode("MIT License"));
+        assertEquals("epl-1.0", memo.findCode("Eclipse Public License 1.0"));
+        assertEquals("epl-1.0", memo.findCode("Eclipse Public License 1.0"));
+        assertEquals(1, memo.size());
+        assertEquals(0, memo.getHits());
+    }
+}
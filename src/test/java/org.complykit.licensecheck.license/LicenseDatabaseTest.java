@@ -0,0 +1,92 @@
+package org.complykit.licensecheck.license;
+
+import org.complykit.licensecheck.model.LicenseDescriptor;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LicenseDatabaseTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<LicenseDescriptor> descriptors = loadText();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LicenseDatabase.write(descriptors, out);
+
+        List<LicenseDescriptor> read = LicenseDatabase.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(descriptors.size(), read.size());
+        for (int i = 0; i < descriptors.size(); i++) {
+            assertEquals(descriptors.get(i).getCode(), read.get(i).getCode());
+            assertEquals(descriptors.get(i).getAlternativeCode(), read.get(i).getAlternativeCode());
+            assertEquals(descriptors.get(i).getLicenseName(), read.get(i).getLicenseName());
+            assertEquals(descriptors.get(i).getRegex(), read.get(i).getRegex());
+        }
+        assertEquals(new LicenseMatcher(descriptors).getFingerprint(), new LicenseMatcher(read).getFingerprint());
+    }
+
+    @Test
+    public void testNullName() throws IOException {
+        List<LicenseDescriptor> descriptors = new ArrayList<LicenseDescriptor>();
+        descriptors.add(descriptor("foo", "(?=.*foo)"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LicenseDatabase.write(descriptors, out);
+        assertNull(LicenseDatabase.read(new ByteArrayInputStream(out.toByteArray())).get(0).getLicenseName());
+    }
+
+    @Test
+    public void testRejectsInvalidRegexes() throws IOException {
+        List<LicenseDescriptor> descriptors = new ArrayList<LicenseDescriptor>();
+        descriptors.add(descriptor("foo", "(?=.*foo"));
+        try {
+            LicenseDatabase.write(descriptors, new ByteArrayOutputStream());
+            fail("invalid regex accepted");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("foo"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        LicenseDatabase.read(new ByteArrayInputStream("mit\tmit\tMIT license\t(?=.*mit)".getBytes("UTF-8")));
+    }
+
+    @Test
+    public void testBundledTableIsCurrent() throws IOException {
+        InputStream database = LicenseDatabaseTest.class.getResourceAsStream("/licenses.bin");
+        if (database == null) {
+            return; // not generated, the plugin falls back to the text table
+        }
+        try {
+            assertTrue("licenses.bin is stale, rebuild it from licenses.txt",
+                    LicenseDatabase.equal(loadText(), LicenseDatabase.read(database)));
+        } finally {
+            database.close();
+        }
+    }
+
+    private static List<LicenseDescriptor> loadText() throws IOException {
+        InputStream in = LicenseDatabaseTest.class.getResourceAsStream("/licenses.txt");
+        try {
+            return LicenseMatcher.loadDescriptors(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static LicenseDescriptor descriptor(String code, String regex) {
+        LicenseDescriptor descriptor = new LicenseDescriptor();
+        descriptor.setCode(code);
+        descriptor.setRegex(regex);
+        return descriptor;
+    }
+}
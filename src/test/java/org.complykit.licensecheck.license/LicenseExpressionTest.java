@@ -0,0 +1,60 @@
+package org.complykit.licensecheck.license;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LicenseExpressionTest {
+
+    private final LicenseMatcher matcher = LicenseMatcher.getDefault();
+    private final LicenseCodeMemo memo = new LicenseCodeMemo(matcher, 100);
+
+    @Test
+    public void testIsExpression() {
+        assertTrue(LicenseExpression.isExpression("MIT OR Apache-2.0"));
+        assertTrue(LicenseExpression.isExpression("(MIT) AND (BSD-3-Clause)"));
+        assertTrue(LicenseExpression.isExpression("GPL-2.0 WITH Classpath-exception-2.0"));
+        assertFalse(LicenseExpression.isExpression("GPL v2 with Classpath exception"));
+        assertFalse(LicenseExpression.isExpression("Dual license: MIT or GPL"));
+        assertFalse(LicenseExpression.isExpression("ORACLE License"));
+        assertFalse(LicenseExpression.isExpression("MIT"));
+    }
+
+    @Test
+    public void testCodes() {
+        assertEquals("mit", memo.findCode("MIT License"));
+        assertEquals("cddl-1.0 OR gpl-2.0 WITH Classpath-exception",
+                memo.findCode("Common Development and Distribution License"
+                        + " OR GNU General Public License v2 WITH Classpath exception"));
+        assertEquals("mit AND (apache-2.0 OR NOASSERTION)",
+                memo.findCode("MIT License AND (Apache License 2.0 OR Some Custom License)"));
+        assertEquals("mit", memo.findCode("The MIT License (MIT)"));
+        assertEquals("mit OR apache-2.0", memo.findCode("The MIT License (MIT) OR Apache License, Version 2.0"));
+        assertNull(memo.findCode("Custom License OR Other Custom License"));
+        // doesn't parse, so it's a single (unrecognized) name
+        assertNull(memo.findCode("Custom License OR"));
+    }
+
+    @Test
+    public void testDecisions() {
+        LicensePolicy policy = new LicensePolicy(matcher, Arrays.asList("gpl-2.0", "gpl-3.0"),
+                Collections.<String>emptyList());
+        assertEquals(LicensePolicy.Decision.ALLOWED, policy.decide("cddl-1.0 OR gpl-2.0 WITH Classpath-exception"));
+        assertEquals(LicensePolicy.Decision.DENIED, policy.decide("cddl-1.0 AND gpl-2.0"));
+        assertEquals(LicensePolicy.Decision.DENIED, policy.decide("gpl-2.0 WITH Classpath-exception"));
+        assertEquals(LicensePolicy.Decision.NO_INFO, policy.decide("mit AND NOASSERTION"));
+        assertEquals(LicensePolicy.Decision.ALLOWED, policy.decide("mit OR NOASSERTION"));
+        assertEquals(LicensePolicy.Decision.DENIED, policy.decide("gpl-3.0 AND (mit OR gpl-2.0)"));
+        assertEquals(LicensePolicy.Decision.ALLOWED, policy.decide("(gpl-3.0 AND mit) OR mit"));
+
+        LicensePolicy whitelist = new LicensePolicy(matcher, Collections.<String>emptyList(), Arrays.asList("mit"));
+        assertEquals(LicensePolicy.Decision.ALLOWED, whitelist.decide("mit OR gpl-2.0"));
+        assertEquals(LicensePolicy.Decision.UNKNOWN, whitelist.decide("mit AND gpl-2.0"));
+    }
+}
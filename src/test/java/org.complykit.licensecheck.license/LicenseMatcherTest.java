@@ -0,0 +1,107 @@
+package org.complykit.licensecheck.license;
+
+import org.complykit.licensecheck.model.LicenseDescriptor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class LicenseMatcherTest {
+
+    private static final String[] NAMES = {
+        "The Apache Software License, Version 2.0",
+        "Apache License 1.1",
+        "MIT License",
+        "The MIT License (MIT)",
+        "Eclipse Public License 1.0",
+        "Eclipse Public License - v 1.0",
+        "GNU General Public License, version 2",
+        "GNU General Public License v3.0",
+        "GNU Lesser General Public License, version 2.1",
+        "GNU Lesser General Public License v3",
+        "2 general public",
+        "CDDL + GPLv2 with classpath exception",
+        "Common Development and Distribution License (CDDL) v1.0",
+        "BSD 3-Clause License",
+        "New BSD License",
+        "Mozilla Public License Version 1.1",
+        "Mozilla Public License 2.0",
+        "MPL 1.1",
+        "Open Software License 3.0",
+        "Open Font License",
+        "Lucent Public License 1.02",
+        "Microsoft Reciprocal License",
+        "X.Net License",
+        "XNet License",
+        "Public Domain",
+        "Bouncy Castle Licence",
+        "APACHE LICENSE 2.0",
+        "Apache\nLicense 2.0",
+        "Apache License Version 2.0",
+        "ümlaut apache 2.0",
+        "",
+    };
+
+    @Test
+    public void testMatchesLikeTheRegexes() {
+        // without the SPDX index, which is meant to find better codes than the regexes
+        LicenseMatcher matcher = new LicenseMatcher(LicenseMatcher.getDefault().getDescriptors());
+        for (String name : NAMES) {
+            assertEquals(name, findWithRegexes(matcher.getDescriptors(), name), matcher.findCode(name));
+        }
+    }
+
+    @Test
+    public void testFindCode() {
+        LicenseMatcher matcher = LicenseMatcher.getDefault();
+        assertEquals("apache-2.0", matcher.findCode("The Apache Software License, Version 2.0"));
+        assertEquals("mit", matcher.findCode("MIT License"));
+        assertEquals("epl-1.0", matcher.findCode("Eclipse Public License 1.0"));
+        assertNull(matcher.findCode("Public Domain"));
+        assertNull(matcher.findCode(null));
+    }
+
+    @Test
+    public void testIndexComesFirst() {
+        LicenseMatcher matcher = LicenseMatcher.getDefault();
+        LicenseMatcher regexesOnly = new LicenseMatcher(matcher.getDescriptors());
+        String name = "GNU Lesser General Public License, version 2.1";
+        assertEquals("gpl-2.0", regexesOnly.findCode(name));
+        assertEquals("lgpl-2.1", matcher.findCode(name));
+        assertEquals("lgpl-2.1", matcher.findCode("LGPL-2.1-or-later"));
+        assertFalse(matcher.getFingerprint().equals(regexesOnly.getFingerprint()));
+    }
+
+    @Test
+    public void testFallsBackForOtherRegexes() {
+        List<LicenseDescriptor> descriptors = new ArrayList<LicenseDescriptor>();
+        descriptors.add(descriptor("foo", "^foo\\s+bar$"));
+        descriptors.add(descriptor("bar", "(?=.*bar)"));
+        LicenseMatcher matcher = new LicenseMatcher(descriptors);
+        assertEquals("foo", matcher.findCode("Foo  Bar"));
+        assertEquals("bar", matcher.findCode("Foo Bar Baz"));
+        assertNull(matcher.findCode("Baz"));
+    }
+
+    private static LicenseDescriptor descriptor(String code, String regex) {
+        LicenseDescriptor descriptor = new LicenseDescriptor();
+        descriptor.setCode(code);
+        descriptor.setLicenseName(code);
+        descriptor.setRegex(regex);
+        return descriptor;
+    }
+
+    private static String findWithRegexes(List<LicenseDescriptor> descriptors, String name) {
+        for (LicenseDescriptor descriptor : descriptors) {
+            if (Pattern.compile(descriptor.getRegex(), Pattern.CASE_INSENSITIVE).matcher(name).find()) {
+                return descriptor.getCode();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,54 @@
+package org.complykit.licensecheck.license;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LicensePolicyTest {
+
+    private final LicenseMatcher matcher = LicenseMatcher.getDefault();
+
+    @Test
+    public void testCodeIds() {
+        int apache = matcher.getCodeId("apache-2.0");
+        assertTrue(apache >= 0 && apache < matcher.getCodeCount());
+        assertEquals(apache, matcher.getCodeId("Apache-2.0"));
+        assertFalse(apache == matcher.getCodeId("mit"));
+        assertEquals(-1, matcher.getCodeId("no-such-license"));
+        assertEquals(-1, matcher.getCodeId(null));
+    }
+
+    @Test
+    public void testBlacklist() {
+        LicensePolicy policy = new LicensePolicy(matcher, Arrays.asList("GPL-3.0", "custom-1.0"),
+                Collections.<String>emptyList());
+        assertFalse(policy.isWhitelistActive());
+        assertEquals(LicensePolicy.Decision.DENIED, policy.decide(matcher.getCodeId("gpl-3.0")));
+        assertEquals(LicensePolicy.Decision.ALLOWED, policy.decide(matcher.getCodeId("mit")));
+        assertEquals(LicensePolicy.Decision.DENIED, policy.decide("Custom-1.0"));
+        assertEquals(LicensePolicy.Decision.ALLOWED, policy.decide("custom-2.0"));
+    }
+
+    @Test
+    public void testWhitelist() {
+        LicensePolicy policy = new LicensePolicy(matcher, Arrays.asList("mit"), Arrays.asList("mit", "apache-2.0"));
+        assertEquals(LicensePolicy.Decision.ALLOWED, policy.decide(matcher.getCodeId("apache-2.0")));
+        assertEquals(LicensePolicy.Decision.DENIED, policy.decide(matcher.getCodeId("mit")));
+        assertEquals(LicensePolicy.Decision.UNKNOWN, policy.decide(matcher.getCodeId("gpl-2.0")));
+        assertEquals(LicensePolicy.Decision.UNKNOWN, policy.decide("custom-1.0"));
+    }
+
+    @Test
+    public void testWhitelistWithoutKnownCodesStaysActive() {
+        LicensePolicy policy = new LicensePolicy(matcher, Collections.<String>emptyList(),
+                Arrays.asList("custom-1.0"));
+        assertTrue(policy.isWhitelistActive());
+        assertEquals(LicensePolicy.Decision.UNKNOWN, policy.decide(matcher.getCodeId("mit")));
+        assertEquals(LicensePolicy.Decision.ALLOWED, policy.decide("custom-1.0"));
+    }
+}
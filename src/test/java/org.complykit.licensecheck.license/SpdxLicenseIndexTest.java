@@ -0,0 +1,118 @@
+package org.complykit.licensecheck.license;
+
+import org.complykit.licensecheck.model.LicenseDescriptor;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SpdxLicenseIndexTest {
+
+    private static final String LIST = "{\"licenseListVersion\": \"3.2\", \"licenses\": ["
+            + "{\"licenseId\": \"Apache-2.0\", \"name\": \"Apache License 2.0\", \"isOsiApproved\": true},"
+            + "{\"licenseId\": \"BSD-3-Clause\", \"name\": \"BSD 3-Clause \\\"New\\\" or \\\"Revised\\\" License\"},"
+            + "{\"licenseId\": \"GPL-2.0-or-later\", \"name\": \"GNU General Public License v2.0 or later\"},"
+            + "{\"licenseId\": \"MirOS\", \"name\": \"The MirOS Licence\"},"
+            + "{\"licenseId\": \"PostgreSQL\", \"name\": \"PostgreSQL License\"}"
+            + "]}";
+
+    @Test
+    public void testNormalize() {
+        assertEquals("apachelicense2.0", SpdxLicenseIndex.normalize("The Apache License, Version 2.0"));
+        assertEquals("apachelicense2.0", SpdxLicenseIndex.normalize("Apache License v2.0"));
+        assertEquals("apachelicense2.0", SpdxLicenseIndex.normalize("  APACHE   LICENSE  2.0. "));
+        assertEquals("apache2.0", SpdxLicenseIndex.normalize("Apache-2.0"));
+        assertEquals("eclipsepubliclicense1.0", SpdxLicenseIndex.normalize("Eclipse Public License - v 1.0"));
+        assertEquals("bsd3clauseneworrevisedlicense",
+                SpdxLicenseIndex.normalize("BSD 3-Clause \"New\" or \"Revised\" License"));
+        assertEquals("mirosdlicense", SpdxLicenseIndex.normalize("MirOS'd Licence"));
+        assertEquals("foolicenseversion", SpdxLicenseIndex.normalize("Foo License Version"));
+        assertEquals("versionlicense", SpdxLicenseIndex.normalize("Version License"));
+        assertEquals("gplv", SpdxLicenseIndex.normalize("GPL v"));
+        assertEquals("", SpdxLicenseIndex.normalize(" - "));
+    }
+
+    @Test
+    public void testFindCode() throws IOException {
+        SpdxLicenseIndex index = load(LIST, "ASL 2.0\tApache-2.0\n# comment\n\nUnknown\tFoo-1.0\n");
+        assertEquals("3.2", index.getLicenseListVersion());
+        assertEquals("apache-2.0", index.findCode("The Apache License, Version 2.0"));
+        assertEquals("apache-2.0", index.findCode("apache-2.0"));
+        assertEquals("apache-2.0", index.findCode("ASL 2.0"));
+        // mapped through the alternative code
+        assertEquals("bsd-3", index.findCode("BSD-3-Clause"));
+        assertEquals("bsd-3", index.findCode("BSD 3-Clause New or Revised License"));
+        // without the suffix
+        assertEquals("gpl-2.0", index.findCode("GPL-2.0-or-later"));
+        assertEquals("miros", index.findCode("MirOS License"));
+        // not in the table
+        assertNull(index.findCode("PostgreSQL License"));
+        assertNull(index.findCode("Apache License"));
+        assertNull(index.findCode(null));
+    }
+
+    @Test
+    public void testAmbiguousNamesAreLeftOut() throws IOException {
+        SpdxLicenseIndex index = load(LIST, "Apache\tApache-2.0\nApache\tMirOS\n");
+        assertNull(index.findCode("Apache"));
+        assertNotNull(index.findCode("Apache-2.0"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        load("[1, 2, 3]", null);
+    }
+
+    @Test
+    public void testBundledList() throws IOException {
+        SpdxLicenseIndex index = LicenseMatcher.getDefault().getIndex();
+        assertNotNull(index);
+        assertTrue(index.getEntries().size() > 100);
+        assertEquals("apache-2.0", index.findCode("The Apache Software License, Version 2.0"));
+        assertEquals("mit", index.findCode("The MIT License"));
+        assertEquals("epl-1.0", index.findCode("Eclipse Public License - v 1.0"));
+        assertEquals("cddl-1.0", index.findCode("CDDL v1.0"));
+        assertEquals("lgpl-2.1", index.findCode("GNU Lesser General Public License v2.1 only"));
+        assertEquals("bsd-2", index.findCode("BSD 2-Clause \"Simplified\" License"));
+        // every alias resolves to a code
+        BufferedReader aliases = new BufferedReader(new InputStreamReader(
+                SpdxLicenseIndexTest.class.getResourceAsStream("/license-aliases.txt"), "UTF-8"));
+        try {
+            String alias;
+            while ((alias = aliases.readLine()) != null) {
+                if (!alias.startsWith("#")) {
+                    assertNotNull(alias, index.findCode(alias.split("\t")[0]));
+                }
+            }
+        } finally {
+            aliases.close();
+        }
+    }
+
+    private static SpdxLicenseIndex load(String list, String aliases) throws IOException {
+        List<LicenseDescriptor> descriptors = new ArrayList<LicenseDescriptor>();
+        descriptors.add(descriptor("apache-2.0", "apache-2.0"));
+        descriptors.add(descriptor("bsd-3", "bsd-3-clause"));
+        descriptors.add(descriptor("gpl-2.0", "gpl-2.0"));
+        descriptors.add(descriptor("miros", "miros"));
+        return SpdxLicenseIndex.load(new ByteArrayInputStream(list.getBytes("UTF-8")),
+                aliases == null ? null : new ByteArrayInputStream(aliases.getBytes("UTF-8")), descriptors);
+    }
+
+    private static LicenseDescriptor descriptor(String code, String alternativeCode) {
+        LicenseDescriptor descriptor = new LicenseDescriptor();
+        descriptor.setCode(code);
+        descriptor.setAlternativeCode(alternativeCode);
+        descriptor.setRegex("(?=.*" + code + ")");
+        return descriptor;
+    }
+}
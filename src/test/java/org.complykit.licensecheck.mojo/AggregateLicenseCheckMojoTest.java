@@ -0,0 +1,89 @@
+package org.complykit.licensecheck.mojo;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+import org.complykit.licensecheck.profile.Profiler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.complykit.licensecheck.mojo.SyntheticRepository.count;
+import static org.complykit.licensecheck.mojo.SyntheticRepository.recordingLog;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AggregateLicenseCheckMojoTest {
+
+    private File basedir;
+
+    @Before
+    public void setUp() throws IOException {
+        basedir = SyntheticRepository.createTempDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        SyntheticRepository.delete(basedir);
+    }
+
+    @Test
+    public void testChecksSharedArtifactsOnce() throws Exception {
+        SyntheticRepository repository = new SyntheticRepository(basedir).artifacts(60);
+        List<Artifact> artifacts = new ArrayList<Artifact>(repository.generate());
+        repository.writePom("org.example", "unlicensed", "1.0", null, null);
+
+        // a and b share 20 artifacts, b depends on a, and on the unlicensed artifact which a only uses for tests
+        MavenProject a = module("a", new LinkedHashSet<Artifact>(artifacts.subList(0, 40)));
+        a.getDependencyArtifacts().add(artifact("org.example", "unlicensed", "test"));
+        MavenProject b = module("b", new LinkedHashSet<Artifact>(artifacts.subList(20, 60)));
+        b.getDependencyArtifacts().add(artifact("org.example", "unlicensed", "compile"));
+        b.getDependencyArtifacts().add(artifact("org.example", "a", "compile"));
+
+        List<String> lines = new ArrayList<String>();
+        AggregateLicenseCheckMojo mojo = repository.configure(new AggregateLicenseCheckMojo(),
+                new LinkedHashSet<Artifact>(), 4, recordingLog(lines));
+        mojo.reactorProjects = Arrays.asList(a, b);
+        mojo.excludedScopes = new String[]{"test"};
+        mojo.profile = true;
+
+        try {
+            mojo.execute();
+            fail("the unlicensed artifact should fail b");
+        } catch (MojoFailureException expected) {
+            // expected
+        }
+
+        assertEquals(61, mojo.profiler.getCalls(Profiler.Phase.CHECK));
+        int modules = lines.indexOf("Modules with license violations:");
+        assertTrue(modules > 0);
+        assertEquals("  org.example:b:jar:1.0", lines.get(modules + 1));
+        assertEquals(80, count(lines, "LICENSE: VALID "));
+        assertEquals(1, count(lines, "LICENSE: ARTIFACT_EXCLUDED"));
+        assertEquals(1, count(lines, "LICENSE: INVALID (no license info)"));
+    }
+
+    private static MavenProject module(String artifactId, Set<Artifact> dependencies) {
+        MavenProject project = new MavenProject();
+        project.setGroupId("org.example");
+        project.setArtifactId(artifactId);
+        project.setVersion("1.0");
+        project.setDependencyArtifacts(dependencies);
+        return project;
+    }
+
+    private static Artifact artifact(String groupId, String artifactId, String scope) {
+        return new DefaultArtifact(groupId, artifactId, "1.0", scope, "jar", null, new DefaultArtifactHandler("jar"));
+    }
+}
@@ -1,14 +1,56 @@
 package org.complykit.licensecheck.mojo;
 
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.plugin.MojoFailureException;
+import org.complykit.licensecheck.cache.NegativeCache;
+import org.complykit.licensecheck.profile.Profiler;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.complykit.licensecheck.mojo.SyntheticRepository.count;
+import static org.complykit.licensecheck.mojo.SyntheticRepository.recordingLog;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class OpenSourceLicenseCheckMojoTest {
 
+    private File basedir;
+
+    @Before
+    public void setUp() throws IOException {
+        basedir = SyntheticRepository.createTempDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        SyntheticRepository.delete(basedir);
+    }
+
     @Test
     public void testGetAsLowerCaseSet() {
         String src[] = {"Test1", "Test2", "Test3"};
@@ -22,4 +64,290 @@ public class OpenSourceLicenseCheckMojoTest {
         assertTrue(result.containsAll(expected));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testPolicyIsSharedBySameLists() throws Exception {
+        OpenSourceLicenseCheckMojo first = new OpenSourceLicenseCheckMojo();
+        first.blacklist = new String[] {"GPL-2.0"};
+        OpenSourceLicenseCheckMojo second = new OpenSourceLicenseCheckMojo();
+        second.caches = first.caches;
+        second.blacklist = new String[] {"GPL-2.0"};
+        OpenSourceLicenseCheckMojo other = new OpenSourceLicenseCheckMojo();
+        other.caches = first.caches;
+        other.blacklist = new String[] {"GPL-3.0"};
+
+        assertTrue(first.getPolicy() == second.getPolicy());
+        assertTrue(first.getPolicy() != other.getPolicy());
+        assertEquals(Collections.singleton("gpl-2.0"), first.getPolicy().getBlacklist());
+    }
+
+    @Test
+    public void testGetPomPath() {
+        File dir = new File("repo/org/example/lib/1.0");
+
+        Artifact jar = new DefaultArtifact("org.example", "lib", "1.0", "compile", "jar", null, new DefaultArtifactHandler("jar"));
+        jar.setFile(new File(dir, "lib-1.0.jar"));
+        Artifact pom = new DefaultArtifact("org.example", "lib", "1.0", "compile", "pom", null, new DefaultArtifactHandler("pom"));
+        pom.setFile(new File(dir, "lib-1.0.pom"));
+
+        OpenSourceLicenseCheckMojo mojo = new OpenSourceLicenseCheckMojo();
+        String expected = new File(dir, "lib-1.0.pom").getAbsolutePath();
+        assertEquals(expected, mojo.getPomPath(jar));
+        assertEquals(expected, mojo.getPomPath(pom));
+    }
+
+    @Test
+    public void testFlattenBreadthFirst() {
+        // root -> a -> c -> d, root -> b -> d
+        DefaultDependencyNode root = new DefaultDependencyNode((Dependency) null);
+        DefaultDependencyNode a = node("a", "compile");
+        DefaultDependencyNode b = node("b", "compile");
+        DefaultDependencyNode c = node("c", "runtime");
+        DefaultDependencyNode d = node("d", "test");
+        root.setChildren(Arrays.asList(a, b));
+        a.setChildren(Arrays.asList(c));
+        c.setChildren(Arrays.asList(node("d", "test")));
+        b.setChildren(Arrays.asList(d));
+
+        List<Artifact> artifacts = OpenSourceLicenseCheckMojo.flattenBreadthFirst(root, "org.example:app:jar:1");
+
+        assertEquals(4, artifacts.size());
+        assertEquals("org.example:a:1", OpenSourceLicenseCheckMojo.toCoordinates(artifacts.get(0)));
+        assertEquals("org.example:d:1", OpenSourceLicenseCheckMojo.toCoordinates(artifacts.get(3)));
+        assertEquals("test", artifacts.get(3).getScope());
+        assertEquals("org.example:app:jar:1 -> org.example:b:jar:1 -> org.example:d:jar:1",
+                OpenSourceLicenseCheckMojo.describeTrail(artifacts.get(3)));
+    }
+
+    @Test
+    public void testExecuteAgainstSyntheticRepository() throws Exception {
+        SyntheticRepository repository = new SyntheticRepository(basedir).artifacts(500).maxParentDepth(5);
+        Set<Artifact> artifacts = repository.generate();
+        List<String> lines = new ArrayList<String>();
+
+        repository.newMojo(artifacts, 4, recordingLog(lines)).execute();
+
+        assertEquals(500, count(lines, "LICENSE: VALID "));
+    }
+
+    @Test
+    public void testExecuteReportsMissingLicenses() throws Exception {
+        SyntheticRepository repository = new SyntheticRepository(basedir).artifacts(500).missingLicenseRate(0.1);
+        Set<Artifact> artifacts = repository.generate();
+        List<String> lines = new ArrayList<String>();
+
+        try {
+            repository.newMojo(artifacts, 4, recordingLog(lines)).execute();
+            fail("missing licenses should fail the build");
+        } catch (MojoFailureException expected) {
+            // expected
+        }
+
+        assertTrue(repository.getMissingLicenseCount() > 0);
+        assertEquals(repository.getMissingLicenseCount(), count(lines, "LICENSE: INVALID (no license info)"));
+        assertEquals(500 - repository.getMissingLicenseCount(), count(lines, "LICENSE: VALID "));
+    }
+
+    @Test
+    public void testProfile() throws Exception {
+        SyntheticRepository repository = new SyntheticRepository(basedir).artifacts(100);
+        Set<Artifact> artifacts = repository.generate();
+        List<String> lines = new ArrayList<String>();
+        OpenSourceLicenseCheckMojo mojo = repository.newMojo(artifacts, 2, recordingLog(lines));
+        mojo.profile = true;
+        mojo.trace = true;
+        mojo.outputDirectory = new File(basedir, "target");
+
+        mojo.execute();
+
+        assertEquals(1, mojo.profiler.getCalls(Profiler.Phase.TOTAL));
+        assertEquals(100, mojo.profiler.getCalls(Profiler.Phase.CHECK));
+        assertEquals(100, mojo.profiler.getCalls(Profiler.Phase.LICENSE_MATCH));
+        assertTrue(lines.contains("--[ Profile ]------ "));
+        assertTrue(new File(basedir, "target/license-check-profile.json").isFile());
+        assertTrue(new File(basedir, "target/license-check-trace.json").isFile());
+        assertTrue(mojo.profiler.getSpanCount() > 500);
+    }
+
+    @Test
+    public void testSkipsUnchangedDependencies() throws Exception {
+        SyntheticRepository repository = new SyntheticRepository(basedir).artifacts(50);
+        Set<Artifact> artifacts = repository.generate();
+        File target = new File(basedir, "target");
+
+        List<String> lines = new ArrayList<String>();
+        OpenSourceLicenseCheckMojo mojo = repository.newMojo(artifacts, 2, recordingLog(lines));
+        mojo.outputDirectory = target;
+        mojo.execute();
+        assertEquals(50, count(lines, "LICENSE: VALID "));
+
+        lines.clear();
+        mojo = repository.newMojo(artifacts, 2, recordingLog(lines));
+        mojo.outputDirectory = target;
+        mojo.execute();
+        assertEquals(0, count(lines, "LICENSE: "));
+
+        lines.clear();
+        mojo = repository.newMojo(artifacts, 2, recordingLog(lines));
+        mojo.outputDirectory = target;
+        mojo.blacklist = new String[]{"gpl-3.0"};
+        mojo.execute();
+        assertEquals(50, count(lines, "LICENSE: VALID "));
+
+        lines.clear();
+        mojo = repository.newMojo(artifacts, 2, recordingLog(lines));
+        mojo.outputDirectory = target;
+        mojo.blacklist = new String[]{"gpl-3.0"};
+        mojo.force = true;
+        mojo.execute();
+        assertEquals(50, count(lines, "LICENSE: VALID "));
+    }
+
+    @Test
+    public void testModulesShareTheSessionCaches() throws Exception {
+        SyntheticRepository repository = new SyntheticRepository(basedir).artifacts(100);
+        Set<Artifact> artifacts = repository.generate();
+        OpenSourceLicenseCheckMojo first = repository.newMojo(artifacts, 4, SyntheticRepository.newSilentLog());
+        OpenSourceLicenseCheckMojo second = repository.newMojo(artifacts, 4, SyntheticRepository.newSilentLog());
+        second.repoSession = first.repoSession;
+        second.profile = true;
+
+        first.execute();
+        second.execute();
+
+        assertEquals(0, second.profiler.getCalls(Profiler.Phase.READ_POM));
+        assertEquals(100, second.profiler.getCount(Profiler.Counter.VERDICT_HIT));
+    }
+
+    @Test
+    public void testResolvesInBatches() throws Exception {
+        SyntheticRepository repository = new SyntheticRepository(basedir).artifacts(200).maxParentDepth(3)
+                .parentChains(10).remote(true);
+        Set<Artifact> artifacts = repository.generate();
+        List<String> lines = new ArrayList<String>();
+        OpenSourceLicenseCheckMojo mojo = repository.newMojo(artifacts, 4, recordingLog(lines));
+
+        mojo.execute();
+
+        assertEquals(200, count(lines, "LICENSE: VALID "));
+        // the dependencies, and at most one batch per level of parents
+        assertTrue(repository.getBatchResolveCalls() >= 2);
+        assertTrue(repository.getBatchResolveCalls() <= 4);
+        assertEquals(0, repository.getResolveCalls());
+    }
+
+    @Test
+    public void testSpeculativeParents() throws Exception {
+        SyntheticRepository repository = speculativeRepository(new File(basedir, "speculative"));
+        List<String> lines = new ArrayList<String>();
+        OpenSourceLicenseCheckMojo mojo = repository.newMojo(repository.generate(), 4, recordingLog(lines));
+        mojo.batchResolve = false;
+        mojo.speculativeParents = true;
+
+        mojo.execute();
+
+        assertEquals(200, count(lines, "LICENSE: VALID "));
+        assertEquals(null, mojo.parentResolver);
+        // every pom resolved once, some of the parents in the background
+        assertEquals(repository.getResolvedPomCount(), repository.getResolveCalls());
+        assertTrue(mojo.speculatedParents.size() > 0);
+        assertTrue(count(new ArrayList<String>(repository.getResolvingThreads()), "os-check-parents-") > 0);
+
+        SyntheticRepository serialRepository = speculativeRepository(new File(basedir, "serial"));
+        List<String> serialLines = new ArrayList<String>();
+        OpenSourceLicenseCheckMojo serial = serialRepository.newMojo(serialRepository.generate(), 4,
+                recordingLog(serialLines));
+        serial.batchResolve = false;
+
+        serial.execute();
+
+        assertEquals(serialRepository.getResolveCalls(), repository.getResolveCalls());
+        assertEquals(select(serialLines, "LICENSE: "), select(lines, "LICENSE: "));
+        assertEquals(0, count(new ArrayList<String>(serialRepository.getResolvingThreads()), "os-check-parents-"));
+    }
+
+    @Test
+    public void testInterruptedResolutionIsNotAFailure() throws Exception {
+        SyntheticRepository repository = new SyntheticRepository(basedir).artifacts(0).remote(true);
+        repository.generate();
+        repository.writePom("org.example.parents", "parent", "1", null, "MIT License");
+        OpenSourceLicenseCheckMojo mojo = repository.newMojo(new HashSet<Artifact>(), 1,
+                SyntheticRepository.newSilentLog());
+        final RepositorySystem delegate = mojo.repoSystem;
+        final AtomicBoolean interrupt = new AtomicBoolean(true);
+        mojo.repoSystem = SyntheticRepository.proxy(RepositorySystem.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("resolveArtifact".equals(method.getName()) && interrupt.getAndSet(false)) {
+                    ArtifactResult result = new ArtifactResult((ArtifactRequest) args[1]);
+                    result.addException(new InterruptedIOException());
+                    throw new ArtifactResolutionException(Collections.singletonList(result));
+                }
+                return method.invoke(delegate, args);
+            }
+        });
+        mojo.negativeCache = new NegativeCache();
+
+        Artifact interrupted = mojo.retrieveArtifact("org.example.parents:parent:1");
+        // the interrupt is kept for the caller to see
+        assertTrue(Thread.interrupted());
+        assertNull(interrupted);
+        assertEquals(0, mojo.negativeCache.size());
+
+        // not cached as unresolvable either: the next call gets through to the repository
+        assertNotNull(mojo.retrieveArtifact("org.example.parents:parent:1"));
+        assertEquals(1, repository.getResolveCalls());
+    }
+
+    @Test
+    public void testRemembersFailuresBetweenBuilds() throws Exception {
+        SyntheticRepository repository = new SyntheticRepository(basedir).artifacts(0).remote(true);
+        repository.generate();
+        repository.writePom("org.example", "lib-a", "1", "org.example.parents:missing:1", null);
+        repository.writePom("org.example", "lib-b", "1", "org.example.parents:missing:1", null);
+        repository.writePom("org.example", "lib-c", "1", "org.example.parents:bare:1", null);
+        repository.writePom("org.example.parents", "bare", "1", null, null);
+        Set<Artifact> artifacts = new HashSet<Artifact>();
+        for (String artifactId : new String[]{"lib-a", "lib-b", "lib-c"}) {
+            artifacts.add(new DefaultArtifact("org.example", artifactId, "1", "compile", "jar", null,
+                    new DefaultArtifactHandler("jar")));
+        }
+        File cacheDirectory = new File(basedir, "cache");
+
+        for (int build = 0; build < 2; build++) {
+            List<String> lines = new ArrayList<String>();
+            OpenSourceLicenseCheckMojo mojo = repository.newMojo(artifacts, 2, recordingLog(lines));
+            mojo.batchResolve = false;
+            mojo.excludeNoLicense = true;
+            mojo.useCache = true;
+            mojo.cacheDirectory = cacheDirectory;
+            mojo.failureCacheHours = 1;
+            mojo.execute();
+            assertEquals(3, count(lines, "LICENSE: INVALID (no license info) "));
+        }
+
+        // the first build resolves the three dependencies and both parents, the second one only the two
+        // dependencies whose chain was cut short
+        assertEquals(7, repository.getResolveCalls());
+        assertTrue(new File(cacheDirectory, "failures.json").isFile());
+    }
+
+    private static SyntheticRepository speculativeRepository(File directory) {
+        return new SyntheticRepository(directory).artifacts(200).maxParentDepth(6).parentChains(20).remote(true);
+    }
+
+    private static List<String> select(List<String> lines, String prefix) {
+        List<String> selected = new ArrayList<String>();
+        for (String line : lines) {
+            if (line.startsWith(prefix)) {
+                selected.add(line);
+            }
+        }
+        return selected;
+    }
+
+    private static DefaultDependencyNode node(String artifactId, String scope) {
+        return new DefaultDependencyNode(new Dependency(
+                new org.eclipse.aether.artifact.DefaultArtifact("org.example", artifactId, "jar", "1"), scope));
+    }
+
+}
@@ -0,0 +1,484 @@
+package org.complykit.licensecheck.mojo;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.complykit.licensecheck.license.LicenseMatcher;
+import org.complykit.licensecheck.model.LicenseDescriptor;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.DefaultSessionData;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.LocalRepositoryManager;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes a local repository of generated poms to disk and resolves artifacts from it, so the mojo can be run at
+ * production scale without a network or a real ~/.m2.
+ * <p>
+ * Half of the artifacts declare their license themselves, the other half inherit it through one of a number of shared
+ * parent chains (like the parents of bigger projects). The same seed always produces the same repository.
+ * <p>
+ * By default the generated repository is the local repository. In {@link #remote(boolean) remote} mode it plays a
+ * remote repository instead: the local repository starts out empty and poms are copied over as they are resolved.
+ */
+public class SyntheticRepository {
+
+    private final File basedir;
+    private int artifactCount = 1000;
+    private int maxParentDepth = 3;
+    private int parentChains = 50;
+    private int licenseVariety = 10;
+    private double missingLicenseRate = 0.0;
+    private long seed = 42;
+    private boolean remote;
+
+    private final AtomicInteger resolveCalls = new AtomicInteger();
+    private final AtomicInteger batchResolveCalls = new AtomicInteger();
+    private final Set<String> resolvingThreads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final Map<String, String> expectedLicenses = new LinkedHashMap<String, String>();
+
+    public SyntheticRepository(File basedir) {
+        this.basedir = basedir;
+    }
+
+    public SyntheticRepository artifacts(int artifactCount) {
+        this.artifactCount = artifactCount;
+        return this;
+    }
+
+    /**
+     * @param maxParentDepth the longest parent chain, keep it at or below the mojo's maxSearchDepth for every license
+     *                       to be found
+     */
+    public SyntheticRepository maxParentDepth(int maxParentDepth) {
+        this.maxParentDepth = maxParentDepth;
+        return this;
+    }
+
+    public SyntheticRepository parentChains(int parentChains) {
+        this.parentChains = parentChains;
+        return this;
+    }
+
+    /**
+     * @param licenseVariety the number of different license names to use, taken from licenses.txt
+     */
+    public SyntheticRepository licenseVariety(int licenseVariety) {
+        this.licenseVariety = licenseVariety;
+        return this;
+    }
+
+    /**
+     * @param missingLicenseRate the fraction of artifacts (and parent chains) that don't declare any license
+     */
+    public SyntheticRepository missingLicenseRate(double missingLicenseRate) {
+        this.missingLicenseRate = missingLicenseRate;
+        return this;
+    }
+
+    public SyntheticRepository seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public SyntheticRepository remote(boolean remote) {
+        this.remote = remote;
+        return this;
+    }
+
+    /**
+     * @return how many times {@link RepositorySystem#resolveArtifact} was called
+     */
+    public int getResolveCalls() {
+        return resolveCalls.get();
+    }
+
+    /**
+     * @return how many times {@link RepositorySystem#resolveArtifacts} was called
+     */
+    public int getBatchResolveCalls() {
+        return batchResolveCalls.get();
+    }
+
+    /**
+     * @return the names of the threads that called {@link RepositorySystem#resolveArtifact}
+     */
+    public Set<String> getResolvingThreads() {
+        return Collections.unmodifiableSet(resolvingThreads);
+    }
+
+    /**
+     * @return how many distinct poms were copied to the local repository in {@link #remote(boolean) remote} mode
+     */
+    public int getResolvedPomCount() {
+        return countPoms(getLocalRepository());
+    }
+
+    private static int countPoms(File directory) {
+        int count = 0;
+        final File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                count += child.isDirectory() ? countPoms(child) : child.getName().endsWith(".pom") ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    public File getBasedir() {
+        return basedir;
+    }
+
+    /**
+     * @return the license name every generated artifact ends up with (null for none), keyed by g:a:v
+     */
+    public Map<String, String> getExpectedLicenses() {
+        return Collections.unmodifiableMap(expectedLicenses);
+    }
+
+    public int getMissingLicenseCount() {
+        int count = 0;
+        for (String licenseName : expectedLicenses.values()) {
+            if (licenseName == null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the repository.
+     *
+     * @return the generated artifacts, as direct dependencies of a project
+     */
+    public Set<Artifact> generate() throws IOException {
+        final Random random = new Random(seed);
+        final List<String> names = licenseNames(licenseVariety);
+        expectedLicenses.clear();
+
+        // the parent chains: parent-N-1 -> parent-N-2 -> ... and the last one declares the license
+        final String[] chainLicenses = new String[parentChains];
+        final String[] chainHeads = new String[parentChains];
+        for (int chain = 0; chain < parentChains; chain++) {
+            final int depth = 1 + random.nextInt(Math.max(1, maxParentDepth));
+            final String license = random.nextDouble() < missingLicenseRate ? null
+                    : names.get(random.nextInt(names.size()));
+            String parent = null;
+            for (int level = depth; level >= 1; level--) {
+                final String artifactId = "parent-" + chain + "-" + level;
+                writePom("org.example.parents", artifactId, "1", parent, level == depth ? license : null);
+                parent = "org.example.parents:" + artifactId + ":1";
+            }
+            chainLicenses[chain] = license;
+            chainHeads[chain] = parent;
+        }
+
+        final Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
+        for (int i = 0; i < artifactCount; i++) {
+            final String groupId = "org.example.group" + (i % 100);
+            final String artifactId = "lib-" + i;
+            final String version = "1." + (i % 7);
+            final String license;
+            if (parentChains > 0 && maxParentDepth > 0 && random.nextBoolean()) {
+                final int chain = random.nextInt(parentChains);
+                writePom(groupId, artifactId, version, chainHeads[chain], null);
+                license = chainLicenses[chain];
+            } else {
+                license = random.nextDouble() < missingLicenseRate ? null : names.get(random.nextInt(names.size()));
+                writePom(groupId, artifactId, version, null, license);
+            }
+            expectedLicenses.put(groupId + ":" + artifactId + ":" + version, license);
+            artifacts.add(new DefaultArtifact(groupId, artifactId, version, "compile", "jar", null,
+                    new DefaultArtifactHandler("jar")));
+        }
+        return artifacts;
+    }
+
+    /**
+     * @return license names from licenses.txt that the matcher maps back to their own code
+     */
+    static List<String> licenseNames(int count) {
+        final LicenseMatcher matcher = LicenseMatcher.getDefault();
+        final List<String> names = new ArrayList<String>();
+        for (LicenseDescriptor descriptor : matcher.getDescriptors()) {
+            if (names.size() < count && descriptor.getCode().equals(matcher.findCode(descriptor.getLicenseName()))) {
+                names.add(descriptor.getLicenseName());
+            }
+        }
+        return names;
+    }
+
+    void writePom(String groupId, String artifactId, String version, String parent, String license)
+            throws IOException {
+        final StringBuilder pom = new StringBuilder();
+        pom.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        pom.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+        pom.append("  <modelVersion>4.0.0</modelVersion>\n");
+        if (parent != null) {
+            final String[] parts = parent.split(":");
+            pom.append("  <parent>\n");
+            pom.append("    <groupId>").append(parts[0]).append("</groupId>\n");
+            pom.append("    <artifactId>").append(parts[1]).append("</artifactId>\n");
+            pom.append("    <version>").append(parts[2]).append("</version>\n");
+            pom.append("  </parent>\n");
+        }
+        pom.append("  <groupId>").append(groupId).append("</groupId>\n");
+        pom.append("  <artifactId>").append(artifactId).append("</artifactId>\n");
+        pom.append("  <version>").append(version).append("</version>\n");
+        pom.append("  <name>").append(artifactId).append("</name>\n");
+        if (license != null) {
+            pom.append("  <licenses>\n    <license>\n      <name>").append(license).append("</name>\n");
+            pom.append("      <distribution>repo</distribution>\n    </license>\n  </licenses>\n");
+        }
+        pom.append("</project>\n");
+
+        final File file = new File(basedir, path(groupId, artifactId, version, "pom"));
+        file.getParentFile().mkdirs();
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(pom.toString().getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    static String path(String groupId, String artifactId, String version, String extension) {
+        return groupId.replace('.', '/') + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + "."
+                + extension;
+    }
+
+    static String path(org.eclipse.aether.artifact.Artifact artifact) {
+        return path(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), artifact.getExtension());
+    }
+
+    /**
+     * @return a mojo that checks the given artifacts against this repository, without the cross-build cache
+     */
+    public OpenSourceLicenseCheckMojo newMojo(Set<Artifact> artifacts, int threads, Log log) {
+        return configure(new OpenSourceLicenseCheckMojo(), artifacts, threads, log);
+    }
+
+    /**
+     * Points a mojo at this repository, see {@link #newMojo(Set, int, Log)}.
+     */
+    public <T extends OpenSourceLicenseCheckMojo> T configure(T mojo, Set<Artifact> artifacts, int threads, Log log) {
+        final MavenProject project = new MavenProject();
+        project.setDependencyArtifacts(artifacts);
+
+        mojo.setLog(log);
+        mojo.project = project;
+        mojo.repoSystem = newRepositorySystem();
+        mojo.repoSession = newSession();
+        mojo.remoteRepos = Collections.emptyList();
+        mojo.maxSearchDepth = 12;
+        mojo.resolvePomOnly = true;
+        mojo.useCache = false;
+        mojo.threads = threads;
+        mojo.batchResolve = true;
+        return mojo;
+    }
+
+    /**
+     * @return a repository system that resolves artifacts from this repository only
+     */
+    public RepositorySystem newRepositorySystem() {
+        return proxy(RepositorySystem.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("resolveArtifact".equals(method.getName())) {
+                    resolveCalls.incrementAndGet();
+                    resolvingThreads.add(Thread.currentThread().getName());
+                    return resolve((ArtifactRequest) args[1]);
+                }
+                if ("resolveArtifacts".equals(method.getName())) {
+                    batchResolveCalls.incrementAndGet();
+                    final List<ArtifactResult> results = new ArrayList<ArtifactResult>();
+                    boolean failed = false;
+                    for (Object request : (Collection<?>) args[1]) {
+                        try {
+                            results.add(resolve((ArtifactRequest) request));
+                        } catch (ArtifactResolutionException e) {
+                            results.addAll(e.getResults());
+                            failed = true;
+                        }
+                    }
+                    if (failed) {
+                        throw new ArtifactResolutionException(results);
+                    }
+                    return results;
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    public RepositorySystemSession newSession() {
+        final LocalRepository repository = new LocalRepository(getLocalRepository());
+        final LocalRepositoryManager manager = proxy(LocalRepositoryManager.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("getRepository".equals(method.getName())) {
+                    return repository;
+                }
+                if ("getPathForLocalArtifact".equals(method.getName())) {
+                    return path((org.eclipse.aether.artifact.Artifact) args[0]);
+                }
+                return defaultValue(method);
+            }
+        });
+        final SessionData data = new DefaultSessionData();
+        return proxy(RepositorySystemSession.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("getData".equals(method.getName())) {
+                    return data;
+                }
+                if ("getLocalRepositoryManager".equals(method.getName())) {
+                    return manager;
+                }
+                if ("getLocalRepository".equals(method.getName())) {
+                    return repository;
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private File getLocalRepository() {
+        return remote ? new File(basedir, ".local") : basedir;
+    }
+
+    private ArtifactResult resolve(ArtifactRequest request) throws ArtifactResolutionException {
+        final ArtifactResult result = new ArtifactResult(request);
+        final File file = new File(basedir, path(request.getArtifact()));
+        if (!file.isFile()) {
+            result.addException(new IOException("Not found: " + file));
+            throw new ArtifactResolutionException(Collections.singletonList(result));
+        }
+        File local = file;
+        if (remote) {
+            local = new File(getLocalRepository(), path(request.getArtifact()));
+            try {
+                local.getParentFile().mkdirs();
+                Files.copy(file.toPath(), local.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                result.addException(e);
+                throw new ArtifactResolutionException(Collections.singletonList(result));
+            }
+        }
+        result.setArtifact(request.getArtifact().setFile(local));
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(SyntheticRepository.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object defaultValue(Method method) {
+        final Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return Boolean.FALSE;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if ("toString".equals(method.getName())) {
+            return "synthetic";
+        }
+        return null;
+    }
+
+    /**
+     * @return a log that discards everything
+     */
+    public static Log newSilentLog() {
+        return proxy(Log.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                return defaultValue(method);
+            }
+        });
+    }
+
+    /**
+     * @return a log that collects the info messages in lines
+     */
+    public static Log recordingLog(final List<String> lines) {
+        return proxy(Log.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("info".equals(method.getName()) && args.length == 1 && args[0] instanceof CharSequence) {
+                    synchronized (lines) {
+                        lines.add(args[0].toString());
+                    }
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    /**
+     * @return the number of lines that start with prefix
+     */
+    public static int count(List<String> lines, String prefix) {
+        int count = 0;
+        for (String line : lines) {
+            if (line.startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return a new empty directory, for {@link #delete(File)} to remove
+     */
+    public static File createTempDirectory() throws IOException {
+        final File directory = File.createTempFile("license-check-repo", "");
+        directory.delete();
+        directory.mkdirs();
+        return directory;
+    }
+
+    public static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
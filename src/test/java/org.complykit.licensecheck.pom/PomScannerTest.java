@@ -0,0 +1,206 @@
+package org.complykit.licensecheck.pom;
+
+import org.complykit.licensecheck.model.PomInfo;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PomScannerTest {
+
+    @Test
+    public void testLicenseAndParent() throws IOException {
+        PomInfo info = scan("<?xml version=\"1.0\"?>\n"
+                + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+                + "  <!-- <license><name>Not this one</name></license> -->\n"
+                + "  <parent>\n"
+                + "    <groupId>org.example</groupId>\n"
+                + "    <artifactId>parent</artifactId>\n"
+                + "    <version>1.0</version>\n"
+                + "  </parent>\n"
+                + "  <artifactId>child</artifactId>\n"
+                + "  <licenses>\n"
+                + "    <license>\n"
+                + "      <name>The Apache Software License,\n      Version 2.0</name>\n"
+                + "    </license>\n"
+                + "    <license><name>MIT License</name></license>\n"
+                + "  </licenses>\n"
+                + "</project>");
+        assertEquals(Arrays.asList("The Apache Software License,\n      Version 2.0", "MIT License"),
+                info.getLicenseNames());
+        assertEquals("The Apache Software License,\n      Version 2.0 OR MIT License", info.getLicenseName());
+        assertEquals("org.example:parent:1.0", info.getParentCoordinates());
+    }
+
+    @Test
+    public void testLicenseExpressionsAreGrouped() throws IOException {
+        PomInfo info = scan("<project><licenses>"
+                + "<license><name>CDDL-1.1 OR GPL-2.0 WITH Classpath-exception-2.0</name></license>"
+                + "<license><name>MIT</name></license>"
+                + "</licenses></project>");
+        assertEquals("(CDDL-1.1 OR GPL-2.0 WITH Classpath-exception-2.0) OR MIT", info.getLicenseName());
+    }
+
+    @Test
+    public void testNoLicense() throws IOException {
+        PomInfo info = scan("<project>"
+                + "<parent><artifactId>parent</artifactId><groupId>org.example</groupId><version>2</version></parent>"
+                + "<build><plugins><plugin><configuration><licenses><license><name>x</name></license></licenses>"
+                + "</configuration></plugin></plugins></build>"
+                + "</project>");
+        assertNull(info.getLicenseName());
+        assertEquals("org.example:parent:2", info.getParentCoordinates());
+    }
+
+    @Test
+    public void testEmptyNamesAreSkipped() throws IOException {
+        PomInfo info = scan("<project><licenses>"
+                + "<license><name/></license>"
+                + "<license><name></name></license>"
+                + "<license><name> </name></license>"
+                + "<license><name>MIT</name></license>"
+                + "</licenses></project>");
+        assertEquals(Arrays.asList("MIT"), info.getLicenseNames());
+        assertEquals("MIT", info.getLicenseName());
+
+        info = scan("<project><licenses><license><name/></license></licenses>"
+                + "<parent><groupId>g</groupId><artifactId>a</artifactId><version>1</version></parent></project>");
+        assertNull(info.getLicenseName());
+        assertEquals("g:a:1", info.getParentCoordinates());
+    }
+
+    @Test
+    public void testNoParent() throws IOException {
+        PomInfo info = scan("<project><licenses><license><name>A &amp; B</name></license></licenses>"
+                + "<dependencies><dependency><groupId>g</groupId></dependency></dependencies></project>");
+        assertEquals("A & B", info.getLicenseName());
+        assertNull(info.getParentCoordinates());
+    }
+
+    @Test
+    public void testStopsOnceEverythingIsFound() throws IOException {
+        PomInfo info = scan("<project><licenses><license><name>MIT</name></license></licenses>"
+                + "<parent><groupId>g</groupId><artifactId>a</artifactId><version>1</version></parent>"
+                + "<broken></project>");
+        assertEquals("MIT", info.getLicenseName());
+        assertEquals("g:a:1", info.getParentCoordinates());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformed() throws IOException {
+        PomScanner.scan(ByteBuffer.wrap("<project><licenses><license></project>".getBytes("UTF-8")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedStream() throws IOException {
+        PomScanner.scan(new ByteArrayInputStream("<project><licenses><license></project>".getBytes("UTF-8")));
+    }
+
+    @Test
+    public void testMarkupAroundValues() throws IOException {
+        PomInfo info = scan("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!DOCTYPE project [ <!ELEMENT project ANY> ]>\n"
+                + "<pom:project xmlns:pom=\"http://maven.apache.org/POM/4.0.0\" a=\"x > y\">"
+                + "<?pi <license>?>"
+                + "<pom:licenses><pom:license><pom:name><![CDATA[GPL <2>]]> with <!-- no --> &#x43;lasspath</pom:name>"
+                + "</pom:license></pom:licenses>"
+                + "<pom:parent><pom:groupId>g</pom:groupId><pom:artifactId>a</pom:artifactId>"
+                + "<pom:version>1</pom:version><pom:relativePath/></pom:parent>"
+                + "</pom:project>");
+        assertEquals("GPL <2> with  Classpath", info.getLicenseName());
+        assertEquals("g:a:1", info.getParentCoordinates());
+    }
+
+    @Test
+    public void testOtherEncodings() throws IOException {
+        String pom = "<?xml version=\"1.0\" encoding=\"ENCODING\"?>"
+                + "<project><licenses><license><name>Lizenz f\u00fcr \u00c4pfel</name></license></licenses></project>";
+        for (String encoding : new String[] { "ISO-8859-1", "UTF-8", "UTF-16", "UTF-16LE" }) {
+            byte[] bytes = pom.replace("ENCODING", encoding).getBytes(encoding);
+            assertEquals(encoding, "Lizenz f\u00fcr \u00c4pfel", PomScanner.scan(ByteBuffer.wrap(bytes)).getLicenseName());
+        }
+    }
+
+    @Test
+    public void testFiles() throws IOException {
+        File small = File.createTempFile("small", ".pom");
+        File large = File.createTempFile("large", ".pom");
+        try {
+            write(small, "<project><licenses><license><name>MIT</name></license></licenses></project>");
+            StringBuilder padding = new StringBuilder();
+            while (padding.length() < 2 * 1024 * 1024) {
+                padding.append("<!-- padding padding padding padding padding padding padding padding -->\n");
+            }
+            write(large, "<project>" + padding + "<licenses><license><name>Apache</name></license></licenses></project>");
+            assertEquals("MIT", PomScanner.scan(small).getLicenseName());
+            assertEquals("Apache", PomScanner.scan(large).getLicenseName());
+            assertEquals("MIT", PomScanner.scan(small).getLicenseName());
+        } finally {
+            small.delete();
+            large.delete();
+        }
+    }
+
+    @Test
+    public void testParentListener() throws IOException {
+        String parentFirst = "<project><parent><groupId>org.example</groupId><artifactId>parent</artifactId>"
+                + "<version>1</version></parent><licenses><license><name>MIT</name></license></licenses></project>";
+        String licenseFirst = "<project><licenses><license><name>MIT</name></license></licenses><parent>"
+                + "<groupId>org.example</groupId><artifactId>parent</artifactId><version>1</version></parent></project>";
+        for (boolean bytewise : new boolean[]{true, false}) {
+            final List<String> parents = new ArrayList<String>();
+            PomScanner.ParentListener listener = new PomScanner.ParentListener() {
+                @Override
+                public void parentFound(String coordinates) {
+                    parents.add(coordinates);
+                }
+            };
+            byte[] bytes = parentFirst.getBytes("UTF-8");
+            if (bytewise) {
+                PomScanner.scan(ByteBuffer.wrap(bytes), listener);
+            } else {
+                PomScanner.scan(new ByteArrayInputStream(bytes), listener);
+            }
+            assertEquals(Arrays.asList("org.example:parent:1"), parents);
+
+            parents.clear();
+            bytes = licenseFirst.getBytes("UTF-8");
+            if (bytewise) {
+                PomScanner.scan(ByteBuffer.wrap(bytes), listener);
+            } else {
+                PomScanner.scan(new ByteArrayInputStream(bytes), listener);
+            }
+            assertEquals(0, parents.size());
+        }
+    }
+
+    /**
+     * Scans on the byte level and with StAX, both must agree.
+     */
+    private static PomInfo scan(String pom) throws IOException {
+        byte[] bytes = pom.getBytes("UTF-8");
+        PomInfo bytewise = PomScanner.scan(ByteBuffer.wrap(bytes));
+        PomInfo stax = PomScanner.scan(new ByteArrayInputStream(bytes));
+        assertEquals(stax.getLicenseNames(), bytewise.getLicenseNames());
+        assertEquals(stax.getParentCoordinates(), bytewise.getParentCoordinates());
+        return bytewise;
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.complykit.licensecheck.profile;
+
+import org.complykit.licensecheck.profile.Profiler.Counter;
+import org.complykit.licensecheck.profile.Profiler.Phase;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProfilerTest {
+
+    @Test
+    public void testPhasesAndCounters() {
+        Profiler profiler = new Profiler();
+        profiler.stop(Phase.READ_POM, profiler.start());
+        profiler.stop(Phase.READ_POM, profiler.start());
+        profiler.increment(Counter.PARENT_LICENSE_HIT);
+        profiler.add(Counter.PARENT_LICENSE_HIT, 2);
+        profiler.increment(Counter.PARENT_LICENSE_MISS);
+
+        assertEquals(2, profiler.getCalls(Phase.READ_POM));
+        assertEquals(0, profiler.getCalls(Phase.RESOLVE));
+        assertEquals(0.75, profiler.getHitRate(Counter.PARENT_LICENSE_HIT), 0.0);
+        assertEquals(-1, profiler.getHitRate(Counter.LICENSE_CACHE_HIT), 0.0);
+        assertEquals(Phase.values().length + Counter.values().length / 2 + 3, profiler.formatSummary().size());
+    }
+
+    @Test
+    public void testDisabledRecordsNothing() {
+        Profiler profiler = Profiler.DISABLED;
+        profiler.stop(Phase.TOTAL, profiler.start());
+        profiler.increment(Counter.LOCAL_POM_HIT);
+
+        assertEquals(0, profiler.getCalls(Phase.TOTAL));
+        assertEquals(0, profiler.getCount(Counter.LOCAL_POM_HIT));
+        assertEquals(0, profiler.getSpanCount());
+    }
+
+    @Test
+    public void testWriteTrace() throws IOException {
+        Profiler profiler = new Profiler(false, true);
+        profiler.stop(Phase.RESOLVE, profiler.start(), "org.example:lib:1.0");
+        profiler.stop(Phase.CLASSIFY, profiler.start());
+        File file = File.createTempFile("trace", ".json");
+        try {
+            profiler.writeTrace(file);
+            String json = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+            assertEquals(0, profiler.getCalls(Phase.RESOLVE));
+            assertEquals(2, profiler.getSpanCount());
+            assertTrue(json, json.startsWith("{\"traceEvents\":[{\"name\":\"thread_name\",\"ph\":\"M\""));
+            assertTrue(json, json.contains("{\"name\":\"org.example:lib:1.0\",\"cat\":\"resolve artifact\",\"ph\":\"X\",\"ts\":"));
+            assertTrue(json, json.contains("{\"name\":\"classify\",\"cat\":\"classify\",\"ph\":\"X\""));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testWriteJson() throws IOException {
+        Profiler profiler = new Profiler();
+        profiler.stop(Phase.CHECK, profiler.start());
+        profiler.increment(Counter.LICENSE_MEMO_MISS);
+        File file = File.createTempFile("profile", ".json");
+        try {
+            profiler.writeJson(file);
+            String json = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+            assertTrue(json, json.contains("\"check\": {\n      \"calls\": 1,"));
+            assertTrue(json, json.contains("\"license_memo\": {\n      \"hits\": 0,\n      \"misses\": 1,\n      \"hitRate\": 0.0"));
+        } finally {
+            file.delete();
+        }
+    }
+}